@@ -0,0 +1,64 @@
+package crawler.bench;
+
+import crawler.Context;
+import crawler.command.Extract;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 30 fields of the product page, one select per field against one Extract walk.
+ *
+ * @author chi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExtractBenchmark {
+    private static final String[] QUERIES = {
+        "h1", "title", "#guys h2 .active_price", "#girls h2 .active_price", "#guys .select_desc",
+        "#girls .select_desc", ".old_price", ".designer", ".description", ".breadcrumbs", ".product_main",
+        ".sizes", ".size", ".thumb img", ".gallery img", ".product_style", ".reviews", ".review_score",
+        ".review_author", ".review_text", ".related", ".tile_name", ".tile_price", ".tile a", ".catalog",
+        ".logo", ".nav_item", ".search input", ".footer_col", ".copyright",
+    };
+
+    private Document document;
+    private Extract extract;
+
+    @Setup
+    public void setup() {
+        document = Jsoup.parse(Fixtures.string(Fixtures.PRODUCT), "https://www.threadless.com/");
+        extract = new Extract();
+        for (String query : QUERIES) {
+            extract.text(query, query);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> selects() {
+        Map<String, Object> values = new HashMap<>();
+        for (String query : QUERIES) {
+            values.put(query, document.select(query).text());
+        }
+        return values;
+    }
+
+    @Benchmark
+    public Object extract() {
+        Context context = new Context("https://www.threadless.com/product/3711");
+        context.put(Document.class, document);
+        extract.execute(context);
+        return context.get(Map.class);
+    }
+}
@@ -0,0 +1,31 @@
+package crawler.bench;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+
+import java.io.IOException;
+
+/**
+ * html pages under src/main/resources/fixtures, shaped after threadless product and category pages.
+ *
+ * @author chi
+ */
+public final class Fixtures {
+    public static final String PRODUCT = "product.html";
+    public static final String LISTING = "listing.html";
+
+    private Fixtures() {
+    }
+
+    public static byte[] bytes(String name) {
+        try {
+            return Resources.toByteArray(Resources.getResource("fixtures/" + name));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static String string(String name) {
+        return new String(bytes(name), Charsets.UTF_8);
+    }
+}
@@ -0,0 +1,54 @@
+package crawler.bench;
+
+import com.google.common.base.Charsets;
+import crawler.input.HrefExtractor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * links of the listing page as SeedInput.end() takes them, parsing and selecting, selecting from a document
+ * some pipe already built, and scanning the raw bytes.
+ *
+ * @author chi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LinkBenchmark {
+    private static final String URL = "https://www.threadless.com/catalog/";
+
+    private final byte[] listing = Fixtures.bytes(Fixtures.LISTING);
+    private final Document parsed = Jsoup.parse(Fixtures.string(Fixtures.LISTING), URL);
+
+    @Benchmark
+    public void document(Blackhole blackhole) throws IOException {
+        Document document = Jsoup.parse(new ByteArrayInputStream(listing), "UTF-8", URL);
+        for (Element element : document.select("a")) {
+            blackhole.consume(element.attr("abs:href"));
+        }
+    }
+
+    @Benchmark
+    public void select(Blackhole blackhole) {
+        for (Element element : parsed.select("a")) {
+            blackhole.consume(element.attr("abs:href"));
+        }
+    }
+
+    @Benchmark
+    public void extractor(Blackhole blackhole) {
+        HrefExtractor.extract(listing, URL, Charsets.UTF_8, blackhole::consume);
+    }
+}
@@ -0,0 +1,79 @@
+package crawler.bench;
+
+import crawler.Context;
+import crawler.command.Page;
+import crawler.command.Parse;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author chi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageBenchmark {
+    @Param({Fixtures.PRODUCT, Fixtures.LISTING})
+    public String fixture;
+
+    private Document document;
+    private Page page;
+    private final Parse parse = new Parse() {
+        @Override
+        protected Map<String, Object> parse(Context context) {
+            return Collections.singletonMap("copyright", page(context).text(".copyright"));
+        }
+    }.learnPaths();
+
+    @Setup
+    public void setup() {
+        document = Jsoup.parse(Fixtures.string(fixture), "https://www.threadless.com/");
+        page = Page.of(document);
+        page.element("h1");
+    }
+
+    @Benchmark
+    public Element buildIndex() {
+        return Page.of(document).element("h1");
+    }
+
+    /**
+     * a new page of the same template, found by the learned path instead of building the index.
+     */
+    @Benchmark
+    public Object template() {
+        Context context = new Context("https://www.threadless.com/");
+        context.put(Document.class, document);
+        parse.execute(context);
+        return context.get(Map.class);
+    }
+
+    @Benchmark
+    public Element element() {
+        return page.element(".copyright");
+    }
+
+    @Benchmark
+    public String text() {
+        return page.text("h1");
+    }
+
+    @Benchmark
+    public Elements select() {
+        return page.select("a[href]");
+    }
+}
@@ -0,0 +1,103 @@
+package crawler.bench;
+
+import ch.qos.logback.classic.Level;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.sun.net.httpserver.HttpServer;
+import crawler.Context;
+import crawler.Crawler;
+import crawler.command.Page;
+import crawler.command.Parse;
+import crawler.command.ToDocument;
+import crawler.input.RangeInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * crawls product pages end to end, get, ToDocument and a parse, from a stub server in the same jvm.
+ *
+ * @author chi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PipelineBenchmark {
+    private static final int PAGES = 500;
+
+    @Param({"sync", "async", "streaming"})
+    public String mode;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Crawler crawler;
+
+    @Setup
+    public void setup() throws IOException {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        byte[] product = Fixtures.bytes(Fixtures.PRODUCT);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 128);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, product.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(product);
+            }
+        });
+        executor = Executors.newFixedThreadPool(16);
+        server.setExecutor(executor);
+        server.start();
+
+        crawler = new Crawler(16);
+        if ("async".equals(mode)) {
+            crawler.async();
+        } else if ("streaming".equals(mode)) {
+            crawler.streaming();
+        }
+        crawler.input(new RangeInput("http://127.0.0.1:" + server.getAddress().getPort() + "/product/{}/", 0, PAGES))
+            .when("http://127\\.0\\.0\\.1:\\d+/product/\\d+/")
+            .then(new ToDocument(Charsets.UTF_8), new Product());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES)
+    public void crawl() {
+        crawler.crawl();
+    }
+
+    public static class Product extends Parse {
+        @Override
+        protected Map<String, Object> parse(Context context) {
+            Page page = page(context);
+            Map<String, Object> values = Maps.newHashMap();
+            values.put("name", page.text("h1"));
+            values.put("price", page.text("#guys h2 .active_price"));
+            values.put("description", page.text(".select_desc"));
+            return values;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package crawler.bench;
+
+import crawler.Crawler;
+import crawler.Router;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * routes urls of 50 sites through a linear scan of Pipe.accept and through Router.
+ *
+ * @author chi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoutingBenchmark {
+    private final List<Crawler.Pipe> pipes = new ArrayList<>();
+    private final Router<Crawler.Pipe> router = new Router<>();
+    private final String[] urls = new String[1000];
+    private int index;
+
+    @Setup
+    public void setup() {
+        Crawler crawler = new Crawler(1);
+        for (int site = 0; site < 50; site++) {
+            for (String path : new String[]{"product/\\d+/.*", "category/[a-z-]+", "search\\?q=.*"}) {
+                String pattern = "https://www.site" + site + ".com/" + path;
+                Crawler.Pipe pipe = crawler.when(pattern);
+                pipes.add(pipe);
+                router.add(Pattern.compile(pattern), pipe);
+            }
+        }
+
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = "https://www.site" + i % 60 + ".com/product/" + i + "/name-of-the-product";
+        }
+    }
+
+    @Benchmark
+    public List<Crawler.Pipe> linear() {
+        String url = next();
+        List<Crawler.Pipe> matched = new ArrayList<>(1);
+        for (Crawler.Pipe pipe : pipes) {
+            if (pipe.accept(url)) {
+                matched.add(pipe);
+            }
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public List<Crawler.Pipe> router() {
+        return router.route(next());
+    }
+
+    private String next() {
+        index = (index + 1) % urls.length;
+        return urls[index];
+    }
+}
@@ -0,0 +1,64 @@
+package crawler.bench;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import crawler.input.ConcurrentBloomFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the seen-url check SeedInput does for every link, with the filter shared by 8 threads,
+ * against guava's BloomFilter behind one lock as it was before.
+ *
+ * @author chi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class SeedInputBenchmark {
+    private static final int EXPECTED_INSERTIONS = 10 * 1000 * 1000;
+
+    private final ConcurrentBloomFilter filter = ConcurrentBloomFilter.create(EXPECTED_INSERTIONS, Charsets.UTF_8);
+    private final BloomFilter<CharSequence> locked = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), EXPECTED_INSERTIONS);
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Benchmark
+    public boolean put() {
+        return filter.put(url());
+    }
+
+    @Benchmark
+    public boolean mightContain() {
+        return filter.mightContain(url());
+    }
+
+    @Benchmark
+    public boolean lockedPut() {
+        String url = url();
+        synchronized (locked) {
+            return locked.put(url);
+        }
+    }
+
+    @Benchmark
+    public boolean lockedMightContain() {
+        String url = url();
+        synchronized (locked) {
+            return locked.mightContain(url);
+        }
+    }
+
+    private String url() {
+        return "https://www.threadless.com/product/" + sequence.incrementAndGet() % EXPECTED_INSERTIONS + "/";
+    }
+}
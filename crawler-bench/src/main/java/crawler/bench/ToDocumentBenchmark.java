@@ -0,0 +1,59 @@
+package crawler.bench;
+
+import com.google.common.base.Charsets;
+import crawler.Context;
+import crawler.command.Body;
+import crawler.command.ToDocument;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author chi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ToDocumentBenchmark {
+    private static final String URL = "https://www.threadless.com/product/6503/";
+
+    private final ToDocument utf8 = new ToDocument(Charsets.UTF_8);
+    private final ToDocument detect = new ToDocument();
+    private byte[] content;
+
+    @Setup
+    public void setup() {
+        content = Fixtures.bytes(Fixtures.PRODUCT);
+    }
+
+    @Benchmark
+    public Document bytes() {
+        Context context = new Context(URL);
+        context.put(byte[].class, content);
+        utf8.execute(context);
+        return context.get(Document.class);
+    }
+
+    @Benchmark
+    public Document detectCharset() {
+        Context context = new Context(URL);
+        context.put(byte[].class, content);
+        detect.execute(context);
+        return context.get(Document.class);
+    }
+
+    @Benchmark
+    public Document stream() {
+        Context context = new Context(URL);
+        context.put(Body.class, Body.of(content, Charsets.UTF_8));
+        utf8.execute(context);
+        return context.get(Document.class);
+    }
+}
@@ -0,0 +1,37 @@
+package crawler.bench;
+
+import crawler.input.UrlTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * rendering a RangeInput url, parsing the template per call against the compiled template.
+ *
+ * @author chi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UrlTemplateBenchmark {
+    private static final String TEMPLATE = "https://www.threadless.com/product/{}/";
+
+    private final UrlTemplate compiled = UrlTemplate.compile(TEMPLATE);
+    private int id = 6503;
+
+    @Benchmark
+    public String messageFormatter() {
+        return MessageFormatter.arrayFormat(TEMPLATE, new Object[]{id++}).getMessage();
+    }
+
+    @Benchmark
+    public String compiled() {
+        return compiled.render(id++);
+    }
+}
@@ -0,0 +1,96 @@
+package crawler;
+
+import crawler.command.Get;
+import crawler.metrics.Histogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * non-blocking fetch stage, at most concurrencyLevel requests are in flight on the io reactor threads.
+ *
+ * @author chi
+ */
+class AsyncFetcher implements Closeable {
+    private final Logger logger = LoggerFactory.getLogger(AsyncFetcher.class);
+    private final CloseableHttpAsyncClient client;
+    private final Semaphore permits;
+    private final int concurrencyLevel;
+    private final Get get;
+    private final Histogram timer;
+
+    AsyncFetcher(Get get, CloseableHttpAsyncClient client, int concurrencyLevel, Histogram timer) {
+        this.get = get;
+        this.client = client;
+        this.timer = timer;
+        this.concurrencyLevel = concurrencyLevel;
+        this.permits = new Semaphore(concurrencyLevel);
+        client.start();
+    }
+
+    void fetch(Context context, Runnable success, Consumer<Exception> failure) throws InterruptedException {
+        permits.acquire();
+        execute(context, success, failure);
+    }
+
+    /**
+     * fetch for callers which must not block like the retry timer.
+     *
+     * @return false if concurrencyLevel requests are in flight, nothing is fetched then
+     */
+    boolean tryFetch(Context context, Runnable success, Consumer<Exception> failure) {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        execute(context, success, failure);
+        return true;
+    }
+
+    private void execute(Context context, Runnable success, Consumer<Exception> failure) {
+        long start = System.nanoTime();
+
+        client.execute(get.request(context), get.httpClientContext(context), new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    get.read(context, response);
+                } catch (IOException e) {
+                    failed(e);
+                    return;
+                }
+                permits.release();
+                timer.recordSince(start);
+                logger.debug("get {}, {}ms", context.url(), (System.nanoTime() - start) / 1000000);
+                success.run();
+            }
+
+            @Override
+            public void failed(Exception e) {
+                permits.release();
+                failure.accept(e);
+            }
+
+            @Override
+            public void cancelled() {
+                failed(new CancellationException(context.url()));
+            }
+        });
+    }
+
+    int inFlight() {
+        return concurrencyLevel - permits.availablePermits();
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+}
@@ -0,0 +1,65 @@
+package crawler;
+
+/**
+ * closed until failureThreshold failures in a row, then open for openTime, then half open letting one trial through,
+ * which closes it when it succeeds and opens it again when it fails.
+ *
+ * @author chi
+ */
+class CircuitBreaker {
+    private static final long TRIAL_WAIT = 1000;
+
+    private final int failureThreshold;
+    private final long openTime;
+    private int failures;
+    private long openUntil;
+    private boolean trial;
+
+    CircuitBreaker(int failureThreshold, long openTime) {
+        this.failureThreshold = failureThreshold;
+        this.openTime = openTime;
+    }
+
+    /**
+     * @return 0 if a request may go now, otherwise millis to wait before asking again
+     */
+    synchronized long delay(long now) {
+        if (openUntil == 0) {
+            return 0;
+        }
+        if (now < openUntil) {
+            return openUntil - now;
+        }
+        if (trial) {
+            return Math.min(TRIAL_WAIT, openTime);
+        }
+        trial = true;
+        return 0;
+    }
+
+    /**
+     * gives back the trial delay let through when the request could not go out after all.
+     */
+    synchronized void cancelTrial() {
+        trial = false;
+    }
+
+    synchronized void success() {
+        failures = 0;
+        openUntil = 0;
+        trial = false;
+    }
+
+    /**
+     * @return true if this failure opened the breaker
+     */
+    synchronized boolean failure(long now) {
+        failures++;
+        if (trial || (openUntil == 0 && failures >= failureThreshold)) {
+            trial = false;
+            openUntil = now + openTime;
+            return true;
+        }
+        return false;
+    }
+}
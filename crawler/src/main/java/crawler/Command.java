@@ -1,8 +1,19 @@
 package crawler;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * @author chi
  */
 public interface Command {
     boolean execute(Context context);
+
+    /**
+     * values no command after this one reads, the pipe drops them once the last command consuming them is done,
+     * unless the input reads them in end(). closeable values are closed.
+     */
+    default Set<Key<?>> consumes() {
+        return Collections.emptySet();
+    }
 }
@@ -0,0 +1,35 @@
+package crawler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.conn.HttpClientConnectionManager;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * closes expired connections and the ones idle for longer than idleTimeout, so a crawl that pauses
+ * does not find half closed sockets in the pool.
+ *
+ * @author chi
+ */
+class ConnectionEvictor implements Closeable {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("crawler-connection-evictor")
+        .setDaemon(true)
+        .build());
+
+    ConnectionEvictor(HttpClientConnectionManager connectionManager, long idleTimeout) {
+        long interval = Math.max(100, Math.min(5000, idleTimeout / 2));
+        executor.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
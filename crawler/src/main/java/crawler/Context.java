@@ -1,14 +1,15 @@
 package crawler;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
+ * values of one url while it goes through the pipe, kept in an array indexed by Key instead of a map.
+ *
  * @author chi
  */
 public class Context {
     private final String url;
-    private final Map<Class<?>, Object> values = new HashMap<>();
+    private Object[] values = new Object[Math.max(8, Key.count())];
 
     public Context(String url) {
         this.url = url;
@@ -19,11 +20,37 @@ public class Context {
     }
 
     @SuppressWarnings("unchecked")
+    public <T> T get(Key<T> key) {
+        return key.index < values.length ? (T) values[key.index] : null;
+    }
+
+    public <T> void put(Key<T> key, T value) {
+        if (key.index >= values.length) {
+            values = Arrays.copyOf(values, Math.max(key.index + 1, Key.count()));
+        }
+        values[key.index] = value;
+    }
+
+    /**
+     * @return the value which was removed, null if there was none
+     */
+    public <T> T remove(Key<T> key) {
+        T value = get(key);
+        if (value != null) {
+            values[key.index] = null;
+        }
+        return value;
+    }
+
     public <T> T get(Class<T> type) {
-        return (T) values.get(type);
+        return get(Key.of(type));
     }
 
     public <T> void put(Class<T> type, T value) {
-        values.put(type, value);
+        put(Key.of(type), value);
+    }
+
+    public <T> T remove(Class<T> type) {
+        return remove(Key.of(type));
     }
 }
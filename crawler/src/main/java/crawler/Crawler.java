@@ -2,107 +2,74 @@ package crawler;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
-import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.CookieStore;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import crawler.command.Body;
+import crawler.command.Get;
+import crawler.command.Sessions;
+import crawler.input.SeedInput;
+import crawler.metrics.Histogram;
+import crawler.metrics.Metrics;
+import crawler.metrics.Reporter;
+import crawler.scheduler.HostScheduler;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.config.CookieSpecs;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.protocol.HttpClientContext;
-import org.apache.http.config.Registry;
-import org.apache.http.config.RegistryBuilder;
-import org.apache.http.cookie.Cookie;
-import org.apache.http.cookie.CookieSpecProvider;
-import org.apache.http.impl.client.BasicCookieStore;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.apache.http.impl.cookie.BasicClientCookie;
-import org.apache.http.impl.cookie.BestMatchSpecFactory;
-import org.apache.http.impl.cookie.BrowserCompatSpecFactory;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 /**
  * @author chi
  */
 public class Crawler {
+    private static final int SCHEDULER_CAPACITY = 10000;
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
     private static final String DEFAULT_USER_AGENT = "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/38.0.2125.101 Safari/537.36";
+    private final Router<Pipe> router = new Router<>();
     private final List<Pipe> pipes = Lists.newArrayList();
     private final Logger logger = LoggerFactory.getLogger(Crawler.class);
-    private final HttpClient httpClient = httpClient();
+    private HttpConfig httpConfig = new HttpConfig();
+    private PoolingHttpClientConnectionManager connectionManager = httpConfig.connectionManager();
+    private CloseableHttpClient httpClient = httpConfig.httpClient(connectionManager);
+    private final Metrics metrics = new Metrics();
+    private final String name = "crawler-" + SEQUENCE.incrementAndGet();
     private final int concurrencyLevel;
-    private final Command get;
+    private final Get get;
+    private FailurePolicy failurePolicy = new FailurePolicy();
+    private boolean async;
+    private int reportSeconds = 10;
+    private int queueDepth = 100;
+    private int producers = 1;
+    private double requestsPerSecond;
+    private int connectionsPerHost;
     private Input input;
 
     public Crawler(int concurrencyLevel, String userAgent, String cookies) {
         Preconditions.checkState(concurrencyLevel > 0, "concurrency level must be larger than 0");
         this.concurrencyLevel = concurrencyLevel;
 
-        get = new Command() {
-            HttpClientContext httpClientContext = HttpClientContext.create();
-
-            {
-                if (!Strings.isNullOrEmpty(cookies)) {
-                    Registry<CookieSpecProvider> r = RegistryBuilder.<CookieSpecProvider>create()
-                        .register(CookieSpecs.BEST_MATCH, new BestMatchSpecFactory())
-                        .register(CookieSpecs.BROWSER_COMPATIBILITY, new BrowserCompatSpecFactory())
-                        .build();
-
-                    CookieStore cookieStore = new BasicCookieStore();
-                    parseCookies(cookies).forEach(cookieStore::addCookie);
-
-                    httpClientContext.setCookieSpecRegistry(r);
-                    httpClientContext.setCookieStore(cookieStore);
-                }
-            }
-
-            private List<Cookie> parseCookies(String cookies) {
-                List<Cookie> list = Lists.newArrayList();
-
-                for (String cookieStr : cookies.split(";")) {
-                    int index = cookieStr.indexOf("=");
-                    if (index > 0) {
-                        BasicClientCookie cookie = new BasicClientCookie(cookieStr.substring(0, index).trim(),
-                            cookieStr.substring(index + 1).trim());
-                        cookie.setVersion(0);
-//                cookie.setDomain("." + domain);
-                        cookie.setPath("/");
-                        list.add(cookie);
-                    }
-                }
-                return list;
-            }
-
-            @Override
-            public boolean execute(Context context) {
-                HttpGet get = new HttpGet(context.url());
-                try {
-                    Stopwatch w = Stopwatch.createStarted();
-                    get.setHeader("User-Agent", userAgent);
-                    HttpResponse response = httpClient.execute(get, httpClientContext);
-                    byte[] content = EntityUtils.toByteArray(response.getEntity());
-                    context.put(byte[].class, content);
-                    logger.info("get {}, {}ms", context.url(), w.elapsed(TimeUnit.MILLISECONDS));
-                    return true;
-                } catch (Exception e) {
-                    logger.error("failed to crawl {}", context.url(), e);
-                    throw new RuntimeException(e);
-                } finally {
-                    get.releaseConnection();
-                }
-            }
-        };
+        get = new Get(httpClient, userAgent, cookies);
     }
 
     public Crawler(int concurrencyLevel) {
@@ -114,26 +81,30 @@ public class Crawler {
     }
 
     public static HttpClient httpClient() {
-        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
-        connectionManager.setMaxTotal(100);
-        connectionManager.setDefaultMaxPerRoute(100);
-
-        RequestConfig requestConfig = RequestConfig.custom()
-            .setCookieSpec(CookieSpecs.BROWSER_COMPATIBILITY)
-            .setExpectContinueEnabled(true)
-            .setStaleConnectionCheckEnabled(true)
-            .build();
+        HttpConfig config = new HttpConfig();
+        return config.httpClient(config.connectionManager());
+    }
 
-        return HttpClients.custom()
-            .setConnectionManager(connectionManager)
-            .disableConnectionState()
-            .setDefaultRequestConfig(requestConfig)
-            .build();
+    /**
+     * replaces the http client by one built from config, pipes added before keep working.
+     */
+    public Crawler http(HttpConfig config) {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("failed to close http client", e);
+        }
+        httpConfig = config;
+        connectionManager = config.connectionManager();
+        httpClient = config.httpClient(connectionManager);
+        get.httpClient(httpClient).compression(config.compression());
+        return this;
     }
 
     public Pipe when(String urlPattern) {
         Pipe pipe = new Pipe(Pattern.compile(urlPattern));
-        pipe.commands.add(get);
+        pipe.add(get);
+        router.add(pipe.urlPattern, pipe);
         pipes.add(pipe);
         return pipe;
     }
@@ -143,38 +114,364 @@ public class Crawler {
         return this;
     }
 
+    /**
+     * max number of urls waiting for a free worker, the input is paused while the queue is full.
+     */
+    public Crawler queueDepth(int queueDepth) {
+        Preconditions.checkState(queueDepth >= 0, "queue depth must not be negative");
+        this.queueDepth = queueDepth;
+        return this;
+    }
+
+    /**
+     * threads taking urls from the input, for inputs which split into sized parts like RangeInput and ArrayInput.
+     * other inputs are always read by the crawling thread.
+     */
+    public Crawler producers(int producers) {
+        Preconditions.checkState(producers > 0, "producers must be larger than 0");
+        this.producers = producers;
+        return this;
+    }
+
+    /**
+     * fetch without blocking threads, concurrencyLevel becomes the max number of requests in flight and
+     * the rest of the pipe runs on a pool sized to the available processors.
+     */
+    public Crawler async() {
+        this.async = true;
+        return this;
+    }
+
+    /**
+     * hands the response stream to ToDocument instead of buffering it into byte[] first.
+     */
+    public Crawler streaming() {
+        get.streaming(true);
+        return this;
+    }
+
+    /**
+     * retries, circuit breakers and dead letters of failed urls, by default a url is retried 3 times.
+     */
+    public Crawler failurePolicy(FailurePolicy failurePolicy) {
+        this.failurePolicy = failurePolicy;
+        return this;
+    }
+
+    /**
+     * keeps response bodies under directory and fetches them again only when the server says they changed.
+     */
+    public Crawler cache(File directory) {
+        get.cache(directory);
+        return this;
+    }
+
+    /**
+     * cookie sessions of get, by default every worker thread has its own seeded with the cookies of the constructor.
+     * Sessions.perHost(logins) runs several logged in sessions side by side, one per host.
+     */
+    public Crawler sessions(Sessions sessions) {
+        get.sessions(sessions);
+        return this;
+    }
+
+    /**
+     * limits every host to requestsPerSecond and connectionsPerHost, urls of other hosts are handed out
+     * while a host waits for its next permit.
+     */
+    public Crawler politeness(double requestsPerSecond, int connectionsPerHost) {
+        Preconditions.checkState(requestsPerSecond > 0, "requests per second must be larger than 0");
+        Preconditions.checkState(connectionsPerHost > 0, "connections per host must be larger than 0");
+        this.requestsPerSecond = requestsPerSecond;
+        this.connectionsPerHost = connectionsPerHost;
+        return this;
+    }
+
+    /**
+     * logs a summary of the metrics every seconds while crawling, 0 turns it off.
+     */
+    public Crawler report(int seconds) {
+        Preconditions.checkState(seconds >= 0, "report interval must not be negative");
+        this.reportSeconds = seconds;
+        return this;
+    }
+
+    /**
+     * timers of every pipe and command class, succeeded, failed and skipped counters and gauges of the queues,
+     * also exposed over jmx as crawler:type=Metrics while crawling.
+     */
+    public Metrics metrics() {
+        return metrics;
+    }
+
     public void crawl() {
         Preconditions.checkNotNull(input, "missing input");
         logger.info("start crawling");
         Stopwatch stopwatch = Stopwatch.createStarted();
 
-        ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrencyLevel, concurrencyLevel, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(100));
+        int workers = async ? Runtime.getRuntime().availableProcessors() : concurrencyLevel;
+        Dispatcher dispatcher = new Dispatcher(workers, concurrencyLevel + queueDepth);
+        AsyncFetcher fetcher = async ? new AsyncFetcher(get, httpConfig.asyncClient(concurrencyLevel), concurrencyLevel, metrics.timer(name(get))) : null;
+        HostScheduler scheduler = connectionsPerHost > 0 ? new HostScheduler(requestsPerSecond, connectionsPerHost, SCHEDULER_CAPACITY) : null;
+
+        metrics.gauge("dispatcher.queued", dispatcher::queued);
+        metrics.gauge("dispatcher.inFlight", dispatcher::inFlight);
+        metrics.gauge("connections.leased", () -> connectionManager.getTotalStats().getLeased());
+        metrics.gauge("connections.pending", () -> connectionManager.getTotalStats().getPending());
+        if (fetcher != null) {
+            metrics.gauge("fetcher.inFlight", fetcher::inFlight);
+        }
+        if (scheduler != null) {
+            metrics.gauge("scheduler.size", scheduler::size);
+        }
+        if (input instanceof SeedInput) {
+            metrics.gauge("frontier.size", ((SeedInput) input)::pending);
+        }
+        ConnectionEvictor evictor = httpConfig.idleTimeout() > 0 ? new ConnectionEvictor(connectionManager, httpConfig.idleTimeout()) : null;
+        ObjectName mbean = metrics.register(name);
+        Reporter reporter = reportSeconds > 0 ? new Reporter(metrics, reportSeconds, TimeUnit.SECONDS) : null;
+
+        Run run = new Run(dispatcher, fetcher, scheduler, new Failures(failurePolicy, metrics));
+        List<Iterable<Context>> parts = split(input, producers);
+        AtomicInteger total = new AtomicInteger();
 
-        int total = 0;
-        AtomicInteger totalSucceed = new AtomicInteger(0);
+        try {
+            if (scheduler != null) {
+                produce(Collections.singletonList(scheduler.drain(parts)), run, total);
+            } else {
+                produce(parts, run, total);
+            }
 
-        for (final Context context : input) {
-            total++;
-            pool.execute(() -> {
+            dispatcher.awaitIdle();
+            logger.info("done, {}/{}, in {}ms", run.succeeded.get(), total.get(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+            if (reporter != null) {
+                logger.info("metrics {}", reporter.summary());
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            dispatcher.shutdown();
+            close(run.failures);
+            close(reporter);
+            close(evictor);
+            metrics.unregister(mbean);
+            close(fetcher);
+            close(input);
+            closeCommands();
+        }
+    }
+
+    /**
+     * parts of the input for producers threads, an input splits only when its spliterator knows the size of every part.
+     */
+    static List<Iterable<Context>> split(Input input, int producers) {
+        if (producers == 1) {
+            return Collections.singletonList(input);
+        }
+        Spliterator<Context> first = input.spliterator();
+        if (!first.hasCharacteristics(Spliterator.SUBSIZED)) {
+            // an input which can not split may have opened a file for the spliterator already, iterate that one
+            return Collections.singletonList(() -> Spliterators.iterator(first));
+        }
+
+        List<Spliterator<Context>> parts = Lists.newArrayList();
+        parts.add(first);
+        while (parts.size() < producers) {
+            Spliterator<Context> largest = Collections.max(parts, Comparator.comparingLong(Spliterator::estimateSize));
+            Spliterator<Context> prefix = largest.trySplit();
+            if (prefix == null) {
+                break;
+            }
+            parts.add(prefix);
+        }
+        List<Iterable<Context>> iterables = Lists.newArrayList();
+        for (Spliterator<Context> part : parts) {
+            iterables.add(() -> Spliterators.iterator(part));
+        }
+        return iterables;
+    }
+
+    /**
+     * dispatches every part on its own thread, a single part on the calling thread.
+     */
+    private void produce(List<Iterable<Context>> parts, Run run, AtomicInteger total) throws InterruptedException {
+        if (parts.size() == 1) {
+            for (Context context : parts.get(0)) {
+                total.incrementAndGet();
+                run.dispatch(context);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(parts.size(), new ThreadFactoryBuilder()
+            .setNameFormat("crawler-producer-%d")
+            .setDaemon(true)
+            .build());
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (Iterable<Context> part : parts) {
+                futures.add(executor.submit(() -> {
+                    for (Context context : part) {
+                        total.incrementAndGet();
+                        run.dispatch(context);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * one crawl, urls from the input and urls coming back for a retry start here.
+     */
+    private class Run {
+        private static final long SLOT_WAIT = 100;
+
+        final Dispatcher dispatcher;
+        final AsyncFetcher fetcher;
+        final HostScheduler scheduler;
+        final Failures failures;
+        final AtomicInteger succeeded = new AtomicInteger();
+
+        Run(Dispatcher dispatcher, AsyncFetcher fetcher, HostScheduler scheduler, Failures failures) {
+            this.dispatcher = dispatcher;
+            this.fetcher = fetcher;
+            this.scheduler = scheduler;
+            this.failures = failures;
+        }
+
+        /**
+         * blocks until a slot is free, urls of a host with an open circuit breaker are put aside until it half opens.
+         */
+        void dispatch(Context context) throws InterruptedException {
+            long delay = failures.delay(context.url());
+            if (delay > 0) {
+                release(context);
+                dispatcher.hold();
+                failures.schedule(() -> retry(new Context(context.url())), delay);
+                return;
+            }
+            dispatcher.acquire();
+            start(context, true);
+        }
+
+        /**
+         * runs on the timer, never waits for a slot, a host permit or a fetch permit but tries again a bit later.
+         * the breaker is asked last, a trial it lets through is given back if the fetch could not start.
+         */
+        void retry(Context context) {
+            if (!dispatcher.tryAcquire()) {
+                failures.schedule(() -> retry(context), SLOT_WAIT);
+                return;
+            }
+            if (scheduler != null && !scheduler.tryAcquire(context)) {
+                dispatcher.release();
+                failures.schedule(() -> retry(context), SLOT_WAIT);
+                return;
+            }
+            long delay = failures.delay(context.url());
+            if (delay == 0) {
+                try {
+                    if (start(context, false)) {
+                        dispatcher.unhold();
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                failures.cancelTrial(context.url());
+            }
+            release(context);
+            dispatcher.release();
+            failures.schedule(() -> retry(context), Math.max(delay, SLOT_WAIT));
+        }
+
+        /**
+         * runs the pipe of a context holding a slot and, with politeness, a connection of its host.
+         *
+         * @param wait whether to wait for a fetch permit of async
+         * @return false if no fetch permit was free without waiting, nothing is started then
+         */
+        private boolean start(Context context, boolean wait) throws InterruptedException {
+            Runnable task = () -> {
                 try {
                     doCrawl(context);
-                    totalSucceed.incrementAndGet();
+                    succeeded.incrementAndGet();
+                    metrics.counter("succeeded").increment();
+                    failures.succeeded(context.url());
                 } catch (Exception e) {
-                    logger.error("failed to crawl {}, {}", context.url(), e.getMessage());
+                    failed(context, e);
+                } finally {
+                    release(context);
                 }
-            });
+            };
+
+            if (fetcher == null || router.route(context.url()).isEmpty()) {
+                dispatcher.execute(task);
+                return true;
+            }
+            Runnable success = () -> dispatcher.execute(task);
+            Consumer<Exception> failure = e -> {
+                try {
+                    failed(context, e);
+                } finally {
+                    release(context);
+                    dispatcher.release();
+                }
+            };
+            if (wait) {
+                fetcher.fetch(context, success, failure);
+                return true;
+            }
+            return fetcher.tryFetch(context, success, failure);
         }
 
-        try {
-            while (pool.getCompletedTaskCount() < pool.getTaskCount()) {
-                TimeUnit.MILLISECONDS.sleep(100);
+        /**
+         * holds the dispatcher before the slot of the failed attempt is released, so awaitIdle keeps waiting for the retry.
+         */
+        private void failed(Context context, Exception e) {
+            long delay = failures.failed(context.url(), e);
+            if (delay >= 0) {
+                dispatcher.hold();
+                failures.schedule(() -> retry(new Context(context.url())), delay);
             }
+        }
 
-            pool.shutdown();
-            pool.awaitTermination(10, TimeUnit.SECONDS);
-            logger.info("done, {}/{}, in {}ms", totalSucceed.get(), total, stopwatch.elapsed(TimeUnit.MILLISECONDS));
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+        private void release(Context context) {
+            if (scheduler != null) {
+                scheduler.release(context);
+            }
+        }
+    }
+
+    /**
+     * closes commands which hold resources, like an Output flushing what is left, once even if shared by pipes.
+     */
+    private void closeCommands() {
+        Set<Command> closed = Sets.newIdentityHashSet();
+        for (Pipe pipe : pipes) {
+            for (Command command : pipe.commands) {
+                if (command != get && closed.add(command)) {
+                    close(command);
+                }
+            }
+        }
+    }
+
+    private void close(Object resource) {
+        if (resource instanceof Closeable) {
+            try {
+                ((Closeable) resource).close();
+            } catch (IOException e) {
+                logger.warn("failed to close {}", resource, e);
+            }
         }
     }
 
@@ -183,43 +480,109 @@ public class Crawler {
     protected void doCrawl(Context context) {
         boolean processed = false;
 
-        for (Pipe pipe : pipes) {
-            if (pipe.accept(context.url())) {
+        try {
+            List<Pipe> matched = router.route(context.url());
+            for (int i = 0; i < matched.size(); i++) {
                 processed = true;
-                pipe.execute(context);
+                // values are only dropped by the last pipe, the ones before would fetch and parse again
+                matched.get(i).execute(context, i == matched.size() - 1);
+            }
+            if (processed) {
+                // once per page, links are the same whichever pipes ran
                 input.end(context);
             }
+        } finally {
+            Body body = context.get(Body.class);
+            if (body != null) {
+                body.close();
+            }
         }
 
         if (!processed) {
-            logger.info("skip url {}", context.url());
+            metrics.counter("skipped").increment();
+            logger.debug("skip url {}", context.url());
         }
     }
 
+    private static String name(Command command) {
+        String name = command.getClass().getSimpleName();
+        int lambda = name.indexOf("$$Lambda$");
+        if (lambda >= 0) {
+            return name.substring(0, lambda) + " lambda";
+        }
+        return name.isEmpty() ? command.getClass().getName() : name;
+    }
+
     public class Pipe {
         Pattern urlPattern;
         List<Command> commands = Lists.newArrayList();
+        List<Histogram> timers = Lists.newArrayList();
+        List<List<Key<?>>> releases = Lists.newArrayList();
+        Histogram timer;
 
         public Pipe(Pattern urlPattern) {
             this.urlPattern = urlPattern;
+            this.timer = metrics.timer("pipe " + urlPattern.pattern());
         }
 
         public Crawler then(Command... commands) {
-            this.commands.addAll(Arrays.asList(commands));
+            Arrays.asList(commands).forEach(this::add);
             return Crawler.this;
         }
 
+        void add(Command command) {
+            commands.add(command);
+            timers.add(metrics.timer(name(command)));
+            releases.add(Lists.newArrayList(command.consumes()));
+            // a value is dropped after the last command consuming it
+            for (Key<?> key : command.consumes()) {
+                for (int i = 0; i < releases.size() - 1; i++) {
+                    releases.get(i).remove(key);
+                }
+            }
+        }
+
         public boolean accept(String url) {
             return urlPattern.matcher(url).matches();
         }
 
         public void execute(Context context) {
-            for (Command command : commands) {
+            execute(context, true);
+        }
+
+        /**
+         * release drops the values consumed by commands as soon as the last of them is done.
+         */
+        void execute(Context context, boolean release) {
+            long pipeStart = System.nanoTime();
+            for (int i = 0; i < commands.size(); i++) {
+                Command command = commands.get(i);
+                long start = System.nanoTime();
                 boolean success = command.execute(context);
+                // the async fetcher times the request, here get only finds the body already there
+                if (command != get || !async) {
+                    timers.get(i).recordSince(start);
+                }
+                if (release) {
+                    release(context, releases.get(i));
+                }
                 if (!success) {
                     break;
                 }
             }
+            timer.recordSince(pipeStart);
+        }
+
+        private void release(Context context, List<Key<?>> keys) {
+            for (Key<?> key : keys) {
+                if (input != null && input.uses().contains(key)) {
+                    continue;
+                }
+                Object value = context.remove(key);
+                if (value instanceof Closeable) {
+                    close(value);
+                }
+            }
         }
     }
 }
@@ -0,0 +1,114 @@
+package crawler;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * runs tasks on a fixed pool, blocking producers once capacity tasks are in flight.
+ *
+ * @author chi
+ */
+class Dispatcher {
+    private final ThreadPoolExecutor pool;
+    private final Semaphore slots;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object idle = new Object();
+
+    Dispatcher(int workers, int capacity) {
+        // the queue never grows beyond capacity, slots bound it before execute is called
+        pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        slots = new Semaphore(capacity);
+    }
+
+    void submit(Runnable task) throws InterruptedException {
+        acquire();
+        execute(task);
+    }
+
+    /**
+     * reserves a slot for a task which is started later by execute, or given up by release.
+     */
+    void acquire() throws InterruptedException {
+        slots.acquire();
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * reserves a slot without waiting, for callers which must not block like the retry timer.
+     */
+    boolean tryAcquire() {
+        if (!slots.tryAcquire()) {
+            return false;
+        }
+        inFlight.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * counts a task waiting to be retried as in flight without taking a slot, so awaitIdle waits for it.
+     * undone by unhold once the retry got its slot or was given up.
+     */
+    void hold() {
+        inFlight.incrementAndGet();
+    }
+
+    void unhold() {
+        decrement();
+    }
+
+    void execute(Runnable task) {
+        try {
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    done();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            done();
+            throw e;
+        }
+    }
+
+    void awaitIdle() throws InterruptedException {
+        synchronized (idle) {
+            while (inFlight.get() > 0) {
+                idle.wait();
+            }
+        }
+    }
+
+    void release() {
+        done();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int queued() {
+        return pool.getQueue().size();
+    }
+
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    private void done() {
+        slots.release();
+        decrement();
+    }
+
+    private void decrement() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+}
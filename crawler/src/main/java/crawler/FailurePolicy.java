@@ -0,0 +1,75 @@
+package crawler;
+
+import com.google.common.base.Preconditions;
+
+import java.io.File;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * what the crawler does with urls which failed to fetch, times are in milliseconds.
+ * timeouts, connection errors, 5xx and 429 are retried with exponential backoff, a host failing
+ * failureThreshold times in a row is not asked again for openTime, urls failed for good are appended to the dead letter file.
+ *
+ * @author chi
+ */
+public class FailurePolicy {
+    private int maxRetries = 3;
+    private long initialBackoff = 1000;
+    private long maxBackoff = 60000;
+    private int failureThreshold = 5;
+    private long openTime = 30000;
+    private File deadLetters;
+
+    public FailurePolicy retries(int maxRetries) {
+        Preconditions.checkState(maxRetries >= 0, "max retries must not be negative");
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public FailurePolicy backoff(long initialBackoff, long maxBackoff) {
+        Preconditions.checkState(initialBackoff > 0 && maxBackoff >= initialBackoff, "backoff must be larger than 0 and not larger than max backoff");
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    public FailurePolicy circuitBreaker(int failureThreshold, long openTime) {
+        Preconditions.checkState(failureThreshold > 0 && openTime > 0, "failure threshold and open time must be larger than 0");
+        this.failureThreshold = failureThreshold;
+        this.openTime = openTime;
+        return this;
+    }
+
+    /**
+     * appends url, attempts and the last error of urls failed for good as tab separated lines, read them back with FileInput.
+     */
+    public FailurePolicy deadLetters(File deadLetters) {
+        this.deadLetters = deadLetters;
+        return this;
+    }
+
+    int maxRetries() {
+        return maxRetries;
+    }
+
+    int failureThreshold() {
+        return failureThreshold;
+    }
+
+    long openTime() {
+        return openTime;
+    }
+
+    File deadLetters() {
+        return deadLetters;
+    }
+
+    /**
+     * @return half of the exponential delay plus a random part of the other half, so retries of one host spread out
+     */
+    long delay(int attempt, long retryAfter) {
+        long delay = Math.min(maxBackoff, initialBackoff << Math.min(attempt - 1, 30));
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        return Math.max(delay, retryAfter);
+    }
+}
@@ -0,0 +1,166 @@
+package crawler;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import crawler.command.HttpStatusException;
+import crawler.metrics.Metrics;
+import crawler.scheduler.HostScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * applies a FailurePolicy during one crawl, keeps a circuit breaker per host and the attempts of every failing url,
+ * retries are scheduled on a timer thread so no worker sleeps.
+ *
+ * @author chi
+ */
+class Failures implements Closeable {
+    private final Logger logger = LoggerFactory.getLogger(Failures.class);
+    private final FailurePolicy policy;
+    private final Metrics metrics;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("crawler-retry")
+        .setDaemon(true)
+        .build());
+    private final Writer deadLetters;
+
+    Failures(FailurePolicy policy, Metrics metrics) {
+        this.policy = policy;
+        this.metrics = metrics;
+        try {
+            this.deadLetters = policy.deadLetters() == null ? null
+                : new BufferedWriter(new OutputStreamWriter(new FileOutputStream(policy.deadLetters(), true), Charsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return 0 if the host of url may be asked now, otherwise millis until its circuit breaker lets a request through
+     */
+    long delay(String url) {
+        return breaker(url).delay(now());
+    }
+
+    void cancelTrial(String url) {
+        breaker(url).cancelTrial();
+    }
+
+    void succeeded(String url) {
+        breaker(url).success();
+        if (!attempts.isEmpty()) {
+            attempts.remove(url);
+        }
+    }
+
+    /**
+     * @return millis to wait before trying url again, -1 if it failed for good
+     */
+    long failed(String url, Exception e) {
+        boolean retryable = retryable(e);
+        if (retryable && breaker(url).failure(now())) {
+            metrics.counter("circuitOpened").increment();
+            logger.warn("stop crawling {} for {}ms, {}", HostScheduler.host(url), policy.openTime(), e.getMessage());
+        }
+
+        int attempt = attempts.merge(url, 1, Integer::sum);
+        if (retryable && attempt <= policy.maxRetries()) {
+            metrics.counter("retried").increment();
+            long delay = policy.delay(attempt, retryAfter(e));
+            logger.debug("retry {} in {}ms, {}", url, delay, e.getMessage());
+            return delay;
+        }
+
+        attempts.remove(url);
+        metrics.counter("failed").increment();
+        logger.error("failed to crawl {} after {} attempts, {}", url, attempt, e.getMessage());
+        deadLetter(url, attempt, e);
+        return -1;
+    }
+
+    void schedule(Runnable retry, long delay) {
+        timer.schedule(() -> {
+            try {
+                retry.run();
+            } catch (RuntimeException e) {
+                logger.error("failed to retry", e);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        timer.shutdownNow();
+        if (deadLetters != null) {
+            synchronized (deadLetters) {
+                deadLetters.close();
+            }
+        }
+    }
+
+    private CircuitBreaker breaker(String url) {
+        String host = HostScheduler.host(url);
+        CircuitBreaker breaker = breakers.get(host);
+        return breaker != null ? breaker
+            : breakers.computeIfAbsent(host, key -> new CircuitBreaker(policy.failureThreshold(), policy.openTime()));
+    }
+
+    private void deadLetter(String url, int attempt, Exception e) {
+        if (deadLetters == null) {
+            return;
+        }
+        String message = String.valueOf(Throwables.getRootCause(e)).replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        synchronized (deadLetters) {
+            try {
+                deadLetters.write(url + '\t' + attempt + '\t' + message + '\n');
+                deadLetters.flush();
+            } catch (IOException ioe) {
+                logger.error("failed to write dead letter {}", url, ioe);
+            }
+        }
+    }
+
+    /**
+     * timeouts, connection errors and 5xx or 429 statuses, an unknown host or a failing parse is not going to change.
+     */
+    static boolean retryable(Throwable e) {
+        for (Throwable cause : Throwables.getCausalChain(e)) {
+            if (cause instanceof UnknownHostException) {
+                return false;
+            }
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long retryAfter(Throwable e) {
+        for (Throwable cause : Throwables.getCausalChain(e)) {
+            if (cause instanceof HttpStatusException) {
+                return ((HttpStatusException) cause).retryAfter();
+            }
+        }
+        return 0;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+}
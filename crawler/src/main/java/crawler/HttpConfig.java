@@ -0,0 +1,138 @@
+package crawler;
+
+import com.google.common.base.Preconditions;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+
+/**
+ * http tuning of a crawler, timeouts and idle times are in milliseconds.
+ * content encoding is left to Get, which negotiates gzip, deflate and brotli itself.
+ *
+ * @author chi
+ */
+public class HttpConfig {
+    private int connectTimeout = 10000;
+    private int socketTimeout = 30000;
+    private int connectionRequestTimeout = -1;
+    private int maxConnections = 100;
+    private int maxConnectionsPerRoute = 100;
+    private long keepAlive = 30000;
+    private long idleTimeout = 60000;
+    private boolean staleConnectionCheck = true;
+    private boolean compression = true;
+
+    public HttpConfig connectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public HttpConfig socketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        return this;
+    }
+
+    /**
+     * max time to wait for a connection from the pool, -1 waits forever.
+     */
+    public HttpConfig connectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        return this;
+    }
+
+    public HttpConfig maxConnections(int maxConnections, int maxConnectionsPerRoute) {
+        Preconditions.checkState(maxConnections > 0 && maxConnectionsPerRoute > 0, "max connections must be larger than 0");
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    /**
+     * how long an idle connection is kept for reuse when the server does not send a Keep-Alive timeout,
+     * a shorter timeout of the server wins.
+     */
+    public HttpConfig keepAlive(long keepAlive) {
+        Preconditions.checkState(keepAlive > 0, "keep alive must be larger than 0");
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * connections idle for longer are closed by a background thread while crawling, 0 turns the thread off.
+     */
+    public HttpConfig idleTimeout(long idleTimeout) {
+        Preconditions.checkState(idleTimeout >= 0, "idle timeout must not be negative");
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * checks a pooled connection before every request, costs a read with a short timeout per request.
+     */
+    public HttpConfig staleConnectionCheck(boolean staleConnectionCheck) {
+        this.staleConnectionCheck = staleConnectionCheck;
+        return this;
+    }
+
+    public HttpConfig compression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    boolean compression() {
+        return compression;
+    }
+
+    long idleTimeout() {
+        return idleTimeout;
+    }
+
+    RequestConfig requestConfig() {
+        return RequestConfig.custom()
+            .setCookieSpec(CookieSpecs.BROWSER_COMPATIBILITY)
+            .setConnectTimeout(connectTimeout)
+            .setSocketTimeout(socketTimeout)
+            .setConnectionRequestTimeout(connectionRequestTimeout)
+            .setStaleConnectionCheckEnabled(staleConnectionCheck)
+            .build();
+    }
+
+    ConnectionKeepAliveStrategy keepAliveStrategy() {
+        return (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+        };
+    }
+
+    PoolingHttpClientConnectionManager connectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        return connectionManager;
+    }
+
+    CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager) {
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .disableConnectionState()
+            .disableContentCompression()
+            .setKeepAliveStrategy(keepAliveStrategy())
+            .setDefaultRequestConfig(requestConfig())
+            .build();
+    }
+
+    CloseableHttpAsyncClient asyncClient(int maxConnections) {
+        return HttpAsyncClients.custom()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(Math.min(maxConnections, maxConnectionsPerRoute))
+            .setKeepAliveStrategy(keepAliveStrategy())
+            .setDefaultRequestConfig(requestConfig())
+            .build();
+    }
+}
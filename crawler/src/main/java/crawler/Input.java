@@ -1,8 +1,18 @@
 package crawler;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * @author chi
  */
 public interface Input extends Iterable<Context> {
     void end(Context context);
+
+    /**
+     * values end() reads, they are kept even when a command consumes them.
+     */
+    default Set<Key<?>> uses() {
+        return Collections.emptySet();
+    }
 }
@@ -0,0 +1,51 @@
+package crawler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * typed slot of a context, every key owns one index of the context value array.
+ * Key.of(type) is the key behind the class based get and put, create gives more keys of the same type.
+ *
+ * @author chi
+ */
+public final class Key<T> {
+    private static final AtomicInteger COUNT = new AtomicInteger();
+    private static final ClassValue<Key<?>> TYPES = new ClassValue<Key<?>>() {
+        @Override
+        protected Key<?> computeValue(Class<?> type) {
+            return new Key<>(type.getName(), type);
+        }
+    };
+
+    final int index;
+    private final String name;
+    private final Class<T> type;
+
+    private Key(String name, Class<T> type) {
+        this.index = COUNT.getAndIncrement();
+        this.name = name;
+        this.type = type;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Key<T> of(Class<T> type) {
+        return (Key<T>) TYPES.get(type);
+    }
+
+    public static <T> Key<T> create(String name, Class<T> type) {
+        return new Key<>(name, type);
+    }
+
+    static int count() {
+        return COUNT.get();
+    }
+
+    public Class<T> type() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,170 @@
+package crawler;
+
+import com.google.common.collect.Lists;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * matches a url against many patterns, the literal prefix of every pattern goes into a trie which is walked
+ * once per url, and only patterns whose prefix was reached get their regex run.
+ *
+ * @author chi
+ */
+public class Router<T> {
+    private static final String META = "[](){}*+?^$|";
+
+    private final Node root = new Node();
+    private final List<Pattern> patterns = Lists.newArrayList();
+    private final List<T> targets = Lists.newArrayList();
+
+    public Router<T> add(Pattern pattern, T target) {
+        int index = patterns.size();
+        patterns.add(pattern);
+        targets.add(target);
+
+        Node node = root;
+        for (char c : prefix(pattern)) {
+            node = node.child(c);
+        }
+        node.routes.set(index);
+        return this;
+    }
+
+    /**
+     * @return targets of the patterns matching the whole url, in the order they were added
+     */
+    public List<T> route(String url) {
+        BitSet candidates = new BitSet(patterns.size());
+        candidates.or(root.routes);
+
+        List<Node> active = Lists.newArrayList(root);
+        List<Node> next = new ArrayList<>();
+        for (int i = 0; i < url.length() && !active.isEmpty(); i++) {
+            char c = url.charAt(i);
+            for (Node node : active) {
+                node.next(c, next);
+            }
+            for (Node node : next) {
+                candidates.or(node.routes);
+            }
+            List<Node> swap = active;
+            active = next;
+            next = swap;
+            next.clear();
+        }
+
+        List<T> matched = new ArrayList<>(1);
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (patterns.get(i).matcher(url).matches()) {
+                matched.add(targets.get(i));
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * chars every match must start with, an unescaped dot is kept as Node.ANY.
+     * the prefix is empty when the pattern has flags or a top level alternation.
+     */
+    static char[] prefix(Pattern pattern) {
+        String regex = pattern.pattern();
+        if (pattern.flags() != 0 || hasTopLevelAlternation(regex)) {
+            return new char[0];
+        }
+
+        StringBuilder b = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            char atom;
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    break;
+                }
+                atom = regex.charAt(i + 1);
+                i += 2;
+            } else if (META.indexOf(c) >= 0) {
+                break;
+            } else {
+                atom = c == '.' ? Node.ANY : c;
+                i++;
+            }
+
+            char quantifier = i < regex.length() ? regex.charAt(i) : 0;
+            if (quantifier == '*' || quantifier == '?' || quantifier == '{') {
+                break;
+            }
+            b.append(atom);
+            if (quantifier == '+') {
+                break;
+            }
+        }
+        return b.toString().toCharArray();
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Node {
+        static final char ANY = '\uFFFF';
+
+        final BitSet routes = new BitSet();
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        Node any;
+
+        Node child(char c) {
+            if (c == ANY) {
+                if (any == null) {
+                    any = new Node();
+                }
+                return any;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = new Node();
+            return children[children.length - 1];
+        }
+
+        void next(char c, List<Node> next) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    next.add(children[i]);
+                    break;
+                }
+            }
+            if (any != null) {
+                next.add(any);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package crawler.cluster;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import crawler.scheduler.HostScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * one node of a crawl spread over several processes, urls are owned by the node their host hashes to.
+ * urls of other nodes are buffered per owner and sent in batches, when a batch is full or every flushMillis.
+ * a batch that can not be sent is kept and sent again with the next one. at most maxPending urls are kept per owner,
+ * so a dead peer does not grow the heap without limit, urls beyond that are dropped and counted.
+ *
+ * @author chi
+ */
+public class ClusterNode implements Closeable {
+    private static final int VIRTUAL_NODES = 128;
+
+    private final Logger logger = LoggerFactory.getLogger(ClusterNode.class);
+    private final String id;
+    private final HashRing ring;
+    private final Transport transport;
+    private final Map<String, List<String>> batches = new HashMap<>();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private ScheduledExecutorService flusher;
+    private int batchSize = 500;
+    private long flushMillis = 200;
+    private int maxPending = 100 * 1000;
+
+    public ClusterNode(String id, List<String> nodes, Transport transport) {
+        Preconditions.checkState(nodes.contains(id), "%s is not one of the nodes %s", id, nodes);
+        this.id = id;
+        this.ring = new HashRing(nodes, VIRTUAL_NODES);
+        this.transport = transport;
+    }
+
+    public ClusterNode batchSize(int batchSize) {
+        Preconditions.checkState(batchSize > 0, "batch size must be larger than 0");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public ClusterNode flushMillis(long flushMillis) {
+        Preconditions.checkState(flushMillis > 0, "flush interval must be larger than 0");
+        this.flushMillis = flushMillis;
+        return this;
+    }
+
+    public ClusterNode maxPending(int maxPending) {
+        Preconditions.checkState(maxPending > 0, "max pending must be larger than 0");
+        this.maxPending = maxPending;
+        return this;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String owner(String url) {
+        return ring.owner(HostScheduler.host(url));
+    }
+
+    public boolean owns(String url) {
+        return id.equals(owner(url));
+    }
+
+    /**
+     * starts taking urls forwarded by the other nodes, see SeedInput.cluster().
+     */
+    public void start(Consumer<String> receiver) {
+        Preconditions.checkState(flusher == null, "node %s was already started", id);
+        try {
+            transport.listen(id, urls -> {
+                received.addAndGet(urls.size());
+                urls.forEach(receiver);
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("crawler-cluster-flusher")
+            .setDaemon(true)
+            .build());
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * queues url for its owner, which must be another node.
+     */
+    public void forward(String url) {
+        String owner = owner(url);
+        List<String> batch = null;
+        synchronized (batches) {
+            List<String> pending = batches.computeIfAbsent(owner, o -> Lists.newArrayList());
+            if (pending.size() >= maxPending) {
+                dropped.incrementAndGet();
+                return;
+            }
+            pending.add(url);
+            if (pending.size() >= batchSize) {
+                batch = batches.remove(owner);
+            }
+        }
+        if (batch != null) {
+            send(owner, batch);
+        }
+    }
+
+    public void flush() {
+        Map<String, List<String>> pending;
+        synchronized (batches) {
+            pending = new HashMap<>(batches);
+            batches.clear();
+        }
+        pending.forEach(this::send);
+    }
+
+    private void send(String owner, List<String> batch) {
+        try {
+            transport.send(owner, batch);
+            forwarded.addAndGet(batch.size());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("failed to forward {} urls to node {}, keep them for the next batch", batch.size(), owner, e);
+            synchronized (batches) {
+                List<String> pending = batches.remove(owner);
+                if (pending != null) {
+                    batch.addAll(pending);
+                }
+                if (batch.size() > maxPending) {
+                    dropped.addAndGet(batch.size() - maxPending);
+                    batch = Lists.newArrayList(batch.subList(0, maxPending));
+                }
+                batches.put(owner, batch);
+            }
+        }
+    }
+
+    /**
+     * @return urls waiting to be sent to other nodes
+     */
+    public int pending() {
+        synchronized (batches) {
+            return batches.values().stream().mapToInt(List::size).sum();
+        }
+    }
+
+    /**
+     * @return urls sent to other nodes
+     */
+    public long forwarded() {
+        return forwarded.get();
+    }
+
+    /**
+     * @return urls not forwarded because more than maxPending were waiting for their owner
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return urls received from other nodes
+     */
+    public long received() {
+        return received.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        try {
+            flush();
+            int dropped = pending();
+            if (dropped > 0) {
+                logger.warn("node {} closed with {} urls not forwarded", id, dropped);
+            }
+        } finally {
+            transport.close();
+        }
+    }
+}
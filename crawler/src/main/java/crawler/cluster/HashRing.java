@@ -0,0 +1,40 @@
+package crawler.cluster;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * consistent hashing of hosts to nodes, every node is put on the ring many times so hosts spread evenly
+ * and adding or removing a node only moves the hosts of that node.
+ *
+ * @author chi
+ */
+class HashRing {
+    private static final HashFunction HASH = Hashing.murmur3_32();
+
+    private final TreeMap<Integer, String> ring = new TreeMap<>();
+
+    HashRing(List<String> nodes, int virtualNodes) {
+        Preconditions.checkState(!nodes.isEmpty(), "a cluster needs at least one node");
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    String owner(String host) {
+        Map.Entry<Integer, String> entry = ring.ceilingEntry(hash(host));
+        return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+    }
+
+    private static int hash(String key) {
+        return HASH.hashString(key, Charsets.UTF_8).asInt();
+    }
+}
@@ -0,0 +1,35 @@
+package crawler.cluster;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * nodes in the same jvm, a batch is handed to the receiver on the sending thread.
+ * one instance is shared by all nodes, closing it does nothing.
+ *
+ * @author chi
+ */
+public class LocalTransport implements Transport {
+    private final ConcurrentMap<String, Consumer<List<String>>> receivers = new ConcurrentHashMap<>();
+
+    @Override
+    public void listen(String node, Consumer<List<String>> receiver) {
+        receivers.put(node, receiver);
+    }
+
+    @Override
+    public void send(String node, List<String> urls) throws IOException {
+        Consumer<List<String>> receiver = receivers.get(node);
+        if (receiver == null) {
+            throw new IOException("node " + node + " is not listening");
+        }
+        receiver.accept(urls);
+    }
+
+    @Override
+    public void close() {
+    }
+}
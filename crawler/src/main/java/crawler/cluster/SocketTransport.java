@@ -0,0 +1,160 @@
+package crawler.cluster;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * nodes talking over tcp, every node listens on its address and keeps one connection to each peer it sends to.
+ * a batch is the number of urls followed by the length and utf-8 bytes of every url, writeUTF would fail on urls
+ * longer than 65535 bytes. one instance per node.
+ *
+ * @author chi
+ */
+public class SocketTransport implements Transport {
+    private final Logger logger = LoggerFactory.getLogger(SocketTransport.class);
+    private final Map<String, InetSocketAddress> addresses;
+    private final ConcurrentMap<String, Connection> connections = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setNameFormat("crawler-cluster-%d")
+        .setDaemon(true)
+        .build());
+    private volatile ServerSocket server;
+
+    public SocketTransport(Map<String, InetSocketAddress> addresses) {
+        this.addresses = addresses;
+    }
+
+    @Override
+    public void listen(String node, Consumer<List<String>> receiver) throws IOException {
+        InetSocketAddress address = addresses.get(node);
+        if (address == null) {
+            throw new IOException("no address of node " + node);
+        }
+        server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(address);
+        executor.execute(() -> accept(receiver));
+    }
+
+    @Override
+    public void send(String node, List<String> urls) throws IOException {
+        Connection connection = connections.computeIfAbsent(node, Connection::new);
+        try {
+            connection.write(urls);
+        } catch (IOException e) {
+            connections.remove(node, connection);
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void accept(Consumer<List<String>> receiver) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                executor.execute(() -> read(socket, receiver));
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    logger.warn("failed to accept cluster connection", e);
+                }
+            }
+        }
+    }
+
+    private void read(Socket socket, Consumer<List<String>> receiver) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                int count;
+                try {
+                    count = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                List<String> urls = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    urls.add(new String(bytes, Charsets.UTF_8));
+                }
+                receiver.accept(urls);
+            }
+        } catch (IOException e) {
+            if (!server.isClosed()) {
+                logger.warn("cluster connection from {} failed", socket.getRemoteSocketAddress(), e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (server != null) {
+                server.close();
+            }
+        } finally {
+            connections.values().forEach(Connection::close);
+            connections.clear();
+            executor.shutdownNow();
+        }
+    }
+
+    private class Connection {
+        private final String node;
+        private Socket socket;
+        private DataOutputStream out;
+
+        Connection(String node) {
+            this.node = node;
+        }
+
+        synchronized void write(List<String> urls) throws IOException {
+            if (socket == null) {
+                InetSocketAddress address = addresses.get(node);
+                if (address == null) {
+                    throw new IOException("no address of node " + node);
+                }
+                socket = new Socket();
+                socket.connect(address, 10000);
+                socket.setTcpNoDelay(true);
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+            out.writeInt(urls.size());
+            for (String url : urls) {
+                byte[] bytes = url.getBytes(Charsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+        }
+
+        synchronized void close() {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                logger.debug("failed to close connection to {}", node, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package crawler.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * carries batches of urls between the nodes of a cluster.
+ *
+ * @author chi
+ */
+public interface Transport extends Closeable {
+    /**
+     * starts taking batches sent to node, receiver may be called from several threads.
+     */
+    void listen(String node, Consumer<List<String>> receiver) throws IOException;
+
+    void send(String node, List<String> urls) throws IOException;
+}
@@ -0,0 +1,131 @@
+package crawler.command;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteStreams;
+import crawler.Context;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * response body put by a streaming get, it is either read once as a stream or buffered by bytes().
+ * the crawler closes it after the last pipe, which gives the connection back to the pool.
+ *
+ * @author chi
+ */
+public class Body implements Closeable {
+    private final InputStream stream;
+    private final Charset charset;
+    private final Runnable release;
+    private byte[] bytes;
+    private boolean streamed;
+
+    Body(InputStream stream, byte[] bytes, Charset charset, Runnable release) {
+        this.stream = stream;
+        this.bytes = bytes;
+        this.charset = charset;
+        this.release = release;
+    }
+
+    public static Body of(byte[] bytes, Charset charset) {
+        return new Body(null, bytes, charset, null);
+    }
+
+    public static Body of(HttpEntity entity, Runnable release) throws IOException {
+        if (entity == null) {
+            return new Body(null, new byte[0], null, release);
+        }
+        return new Body(entity.getContent(), null, charset(entity), release);
+    }
+
+    /**
+     * @return raw body of the context, from byte[] put by a buffering get or from the body of a streaming one
+     */
+    public static byte[] bytesOf(Context context) {
+        byte[] bytes = context.get(byte[].class);
+        if (bytes != null) {
+            return bytes;
+        }
+        Body body = context.get(Body.class);
+        if (body == null) {
+            return null;
+        }
+        try {
+            return body.bytes();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Charset charset(HttpEntity entity) {
+        try {
+            ContentType contentType = ContentType.get(entity);
+            return contentType == null ? null : contentType.getCharset();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    static Charset charset(String contentType) {
+        try {
+            return contentType == null ? null : ContentType.parse(contentType).getCharset();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return charset of the content type header, null if there is none
+     */
+    public Charset charset() {
+        return charset;
+    }
+
+    public synchronized boolean buffered() {
+        return bytes != null;
+    }
+
+    /**
+     * @return false once the stream was taken without buffering, then neither stream() nor bytes() can be called
+     */
+    public synchronized boolean readable() {
+        return bytes != null || !streamed;
+    }
+
+    public synchronized InputStream stream() {
+        if (bytes != null) {
+            return new ByteArrayInputStream(bytes);
+        }
+        Preconditions.checkState(!streamed, "body was already streamed");
+        streamed = true;
+        return stream;
+    }
+
+    public synchronized byte[] bytes() throws IOException {
+        if (bytes == null) {
+            Preconditions.checkState(!streamed, "body was streamed without keeping the bytes, see ToDocument.keepBytes()");
+            bytes = ByteStreams.toByteArray(stream);
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (stream != null) {
+                stream.close();
+            }
+        } catch (IOException e) {
+            // the connection is released below whatever state the stream is in
+        } finally {
+            if (release != null) {
+                release.run();
+            }
+        }
+    }
+}
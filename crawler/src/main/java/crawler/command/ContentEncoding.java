@@ -0,0 +1,100 @@
+package crawler.command;
+
+import com.google.common.io.ByteStreams;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * negotiates gzip, deflate and brotli and decodes the body as it is read, for the blocking and the async client alike,
+ * the async client does not decode at all and the blocking one knows no brotli.
+ *
+ * @author chi
+ */
+final class ContentEncoding {
+    static final String ACCEPT = "gzip, deflate, br";
+
+    private ContentEncoding() {
+    }
+
+    static void accept(HttpRequest request) {
+        request.setHeader("Accept-Encoding", ACCEPT);
+    }
+
+    /**
+     * replaces an encoded entity by one decoding its stream, does nothing when the response was already decoded.
+     */
+    static void decode(HttpResponse response) throws IOException {
+        Header header = response.getFirstHeader("Content-Encoding");
+        HttpEntity entity = response.getEntity();
+        if (header == null || entity == null) {
+            return;
+        }
+
+        // codings are listed in the order they were applied
+        HeaderElement[] elements = header.getElements();
+        for (int i = elements.length - 1; i >= 0; i--) {
+            String codec = elements[i].getName().toLowerCase(Locale.US);
+            if ("gzip".equals(codec) || "x-gzip".equals(codec)) {
+                entity = new GzipDecompressingEntity(entity);
+            } else if ("deflate".equals(codec)) {
+                entity = new DeflateDecompressingEntity(entity);
+            } else if ("br".equals(codec)) {
+                entity = new BrotliDecompressingEntity(entity);
+            } else if (!"identity".equals(codec)) {
+                throw new IOException("unsupported content coding " + codec);
+            }
+        }
+        response.setEntity(entity);
+        response.removeHeaders("Content-Encoding");
+        response.removeHeaders("Content-Length");
+        response.removeHeaders("Content-MD5");
+    }
+
+    private static class BrotliDecompressingEntity extends HttpEntityWrapper {
+        private InputStream content;
+
+        BrotliDecompressingEntity(HttpEntity entity) {
+            super(entity);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            if (!wrappedEntity.isStreaming()) {
+                return new BrotliInputStream(wrappedEntity.getContent());
+            }
+            if (content == null) {
+                content = new BrotliInputStream(wrappedEntity.getContent());
+            }
+            return content;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                ByteStreams.copy(in, out);
+            }
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package crawler.command;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import crawler.Command;
+import crawler.Context;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * stops the pipe at pages which are near duplicates of a page seen before, like the same product under urls
+ * with other query parameters. pages are compared by the simhash of the document text, or of the raw body
+ * when it runs before ToDocument, which is cheaper but lets markup count.
+ * put it before Parse, pages with at most maxDistance of 64 fingerprint bits different are duplicates.
+ * a page is no duplicate of itself, a url fetched again after a failure or running through another pipe
+ * with the same Dedupe goes on.
+ *
+ * @author chi
+ */
+public class Dedupe implements Command {
+    private static final HashFunction URL_HASH = Hashing.murmur3_128();
+    private final Logger logger = LoggerFactory.getLogger(Dedupe.class);
+    private final SimHashIndex index;
+    private final AtomicLong duplicates = new AtomicLong();
+
+    public Dedupe() {
+        this(3);
+    }
+
+    public Dedupe(int maxDistance) {
+        this.index = new SimHashIndex(maxDistance);
+    }
+
+    @Override
+    public boolean execute(Context context) {
+        CharSequence text = text(context);
+        if (text == null || CharMatcher.JAVA_LETTER_OR_DIGIT.matchesNoneOf(text)) {
+            return true;
+        }
+
+        long fingerprint = SimHash.fingerprint(text);
+        if (!index.add(fingerprint, URL_HASH.hashString(context.url(), Charsets.UTF_8).asLong())) {
+            duplicates.incrementAndGet();
+            logger.debug("near duplicate {}, fingerprint {}", context.url(), Long.toHexString(fingerprint));
+            return false;
+        }
+        return true;
+    }
+
+    private CharSequence text(Context context) {
+        Document document = context.get(Document.class);
+        if (document != null) {
+            return document.text();
+        }
+        byte[] bytes = Body.bytesOf(context);
+        return bytes == null ? null : new String(bytes, Charsets.ISO_8859_1);
+    }
+
+    /**
+     * @return pages stopped as near duplicates
+     */
+    public long duplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * @return pages kept in the index
+     */
+    public int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,42 @@
+package crawler.command;
+
+import crawler.Context;
+import org.jsoup.nodes.Document;
+
+import java.util.Map;
+
+/**
+ * parse declared as fields instead of code, each a css query or a layout key printed by Page.help() and what to
+ * take of what it finds. all fields are found in one walk of the document, however many there are.
+ * <pre>
+ * new Extract().text("name", "h1").text("price", "#guys h2 .active_price").attr("image", ".gallery img", "src")
+ * </pre>
+ * like Elements, a css field takes the text or html of all matched elements and the attribute of the first one
+ * having it. a layout key field takes the element at its path, also when Page would name it by its own id or
+ * class now. a field which matched nothing is null.
+ *
+ * @author chi
+ */
+public class Extract extends Parse {
+    private final Extractor extractor = new Extractor();
+
+    public Extract text(String name, String query) {
+        extractor.add(name, query, Extractor.Value.TEXT, null);
+        return this;
+    }
+
+    public Extract attr(String name, String query, String attribute) {
+        extractor.add(name, query, Extractor.Value.ATTR, attribute);
+        return this;
+    }
+
+    public Extract html(String name, String query) {
+        extractor.add(name, query, Extractor.Value.HTML, null);
+        return this;
+    }
+
+    @Override
+    protected Map<String, Object> parse(Context context) {
+        return extractor.extract(context.get(Document.class));
+    }
+}
@@ -0,0 +1,351 @@
+package crawler.command;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.Queries;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * fields of Extract evaluated in one walk of the document. a css field is only tested against elements with the
+ * id, class or tag its query ends with, so a field costs a map lookup per element instead of a walk per field.
+ * a layout key field counts the ids, classes or tags of its anchor during the walk and follows its child indexes
+ * from there afterwards.
+ *
+ * @author chi
+ */
+class Extractor {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
+    private final List<Field> fields = Lists.newArrayList();
+    private final Map<String, List<Field>> byId = Maps.newHashMap();
+    private final Map<String, List<Field>> byClass = Maps.newHashMap();
+    private final Map<String, List<Field>> byTag = Maps.newHashMap();
+    private final List<Field> any = Lists.newArrayList();
+    private final List<Field> keys = Lists.newArrayList();
+    private final Set<String> anchorIds = Sets.newHashSet();
+    private final Set<String> anchorClassNames = Sets.newHashSet();
+    private final Set<String> anchorTags = Sets.newHashSet();
+
+    enum Value {
+        TEXT, ATTR, HTML
+    }
+
+    void add(String name, String query, Value value, String attribute) {
+        for (Field field : fields) {
+            Preconditions.checkState(!field.name.equals(name), "field %s is declared twice", name);
+        }
+        Field field = new Field(fields.size(), name, query, value, attribute);
+        fields.add(field);
+        if (field.steps != null) {
+            keys.add(field);
+            String anchor = field.steps[0];
+            if (anchor == null) {
+                return;
+            } else if (anchor.startsWith("#")) {
+                anchorIds.add(anchor.substring(1));
+            } else if (anchor.startsWith(".")) {
+                anchorClassNames.add(anchor.substring(1));
+            } else {
+                anchorTags.add(anchor);
+            }
+            return;
+        }
+
+        field.evaluator = Queries.parse(query);
+        String[] subject = subject(query);
+        if (subject == null) {
+            any.add(field);
+        } else if (subject[0].equals("#")) {
+            byId.computeIfAbsent(subject[1], k -> Lists.newArrayList()).add(field);
+        } else if (subject[0].equals(".")) {
+            byClass.computeIfAbsent(subject[1], k -> Lists.newArrayList()).add(field);
+        } else {
+            byTag.computeIfAbsent(subject[1], k -> Lists.newArrayList()).add(field);
+        }
+    }
+
+    Map<String, Object> extract(Document document) {
+        Elements[] matched = new Elements[fields.size()];
+        Anchors anchors = keys.isEmpty() ? null : new Anchors(anchorIds, anchorClassNames, anchorTags);
+
+        Deque<Element> nodes = new ArrayDeque<>();
+        nodes.push(document);
+        while (!nodes.isEmpty()) {
+            Element element = nodes.pop();
+            visit(document, element, matched, anchors);
+            List<Node> children = element.childNodes();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                Node child = children.get(i);
+                if (child instanceof Element) {
+                    nodes.push((Element) child);
+                }
+            }
+        }
+
+        Map<String, Object> values = Maps.newHashMapWithExpectedSize(fields.size());
+        for (Field field : fields) {
+            if (field.steps != null) {
+                Element element = resolve(field, document, anchors);
+                values.put(field.name, element == null ? null : field.value(element));
+            } else {
+                Elements elements = matched[field.index];
+                values.put(field.name, elements == null ? null : field.value(elements));
+            }
+        }
+        return values;
+    }
+
+    private void visit(Document document, Element element, Elements[] matched, Anchors anchors) {
+        String id = element.id();
+        String[] classNames = element.hasAttr("class") ? WHITESPACE.split(element.attr("class")) : null;
+        if (anchors != null) {
+            anchors.add(element, id, classNames);
+        }
+
+        if (!id.isEmpty()) {
+            test(byId.get(id), document, element, matched);
+        }
+        if (classNames != null && !byClass.isEmpty()) {
+            for (String className : classNames) {
+                test(byClass.get(className.toLowerCase()), document, element, matched);
+            }
+        }
+        test(byTag.get(element.tagName()), document, element, matched);
+        test(any, document, element, matched);
+    }
+
+    private void test(List<Field> fields, Document document, Element element, Elements[] matched) {
+        if (fields == null) {
+            return;
+        }
+        for (Field field : fields) {
+            if (field.evaluator.matches(document, element)) {
+                Elements elements = matched[field.index];
+                if (elements == null) {
+                    elements = new Elements();
+                    matched[field.index] = elements;
+                } else if (elements.last() == element) {
+                    // a class given twice
+                    continue;
+                }
+                elements.add(element);
+            }
+        }
+    }
+
+    /**
+     * the anchor must be unique as Page counts it, every step must be an element with the tag at the child index.
+     */
+    private Element resolve(Field field, Document document, Anchors anchors) {
+        String anchor = field.steps[0];
+        Element element;
+        if (anchor == null) {
+            element = document;
+        } else if (anchor.startsWith("#")) {
+            element = anchors.ids.unique(anchor.substring(1));
+        } else if (anchor.startsWith(".")) {
+            element = anchors.classNames.unique(anchor.substring(1));
+        } else {
+            element = anchors.tags.unique(anchor);
+        }
+
+        for (int i = 1; i < field.steps.length && element != null; i++) {
+            Matcher step = Page.STEP.matcher(field.steps[i]);
+            step.matches();
+            int index = Integer.parseInt(step.group(2));
+            if (index >= element.childNodeSize()) {
+                return null;
+            }
+            Node child = element.childNode(index);
+            element = child instanceof Element && ((Element) child).tagName().equals(step.group(1)) ? (Element) child : null;
+        }
+        return element;
+    }
+
+    /**
+     * a query with steps is a layout key, a single #id, .class or tag is taken as css, which selects the same
+     * element if it is unique.
+     *
+     * @return the anchor, null for the document root, followed by the steps, or null if query is css
+     */
+    static String[] layoutKey(String query) {
+        return Page.steps(query);
+    }
+
+    /**
+     * the id, class or tag an element needs to match query, taken from the last compound selector.
+     *
+     * @return prefix "#", "." or "" with the name, null if there is none or query has alternatives
+     */
+    static String[] subject(String query) {
+        String q = query.trim();
+        if (q.indexOf(',') >= 0) {
+            return null;
+        }
+        int depth = 0;
+        int start = q.length();
+        while (start > 0) {
+            char c = q.charAt(start - 1);
+            if (c == ']' || c == ')') {
+                depth++;
+            } else if (c == '[' || c == '(') {
+                depth--;
+            } else if (depth == 0 && (Character.isWhitespace(c) || c == '>' || c == '+' || c == '~')) {
+                break;
+            }
+            start--;
+        }
+
+        String tag = null;
+        String className = null;
+        depth = 0;
+        int i = start;
+        if (i < q.length() && isName(q.charAt(i))) {
+            int end = nameEnd(q, i);
+            if (end < q.length() && q.charAt(end) == '|') {
+                return null;
+            }
+            tag = q.substring(i, end).toLowerCase();
+            i = end;
+        }
+        while (i < q.length()) {
+            char c = q.charAt(i);
+            if (c == '[' || c == '(') {
+                depth++;
+            } else if (c == ']' || c == ')') {
+                depth--;
+            } else if (depth == 0 && (c == '#' || c == '.')) {
+                int end = nameEnd(q, i + 1);
+                String name = q.substring(i + 1, end);
+                if (c == '#' && !name.isEmpty()) {
+                    return new String[]{"#", name};
+                }
+                if (className == null && !name.isEmpty()) {
+                    className = name.toLowerCase();
+                }
+                i = end;
+                continue;
+            }
+            i++;
+        }
+        if (className != null) {
+            return new String[]{".", className};
+        }
+        return tag == null ? null : new String[]{"", tag};
+    }
+
+    private static boolean isName(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+    }
+
+    private static int nameEnd(String q, int from) {
+        int end = from;
+        while (end < q.length() && isName(q.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    static class Field {
+        final int index;
+        final String name;
+        final Value value;
+        final String attribute;
+        final String[] steps;
+        Evaluator evaluator;
+
+        Field(int index, String name, String query, Value value, String attribute) {
+            this.index = index;
+            this.name = name;
+            this.value = value;
+            this.attribute = attribute;
+            this.steps = layoutKey(query);
+        }
+
+        Object value(Element element) {
+            switch (value) {
+                case ATTR:
+                    return element.attr(attribute);
+                case HTML:
+                    return element.html();
+                default:
+                    return element.text();
+            }
+        }
+
+        Object value(Elements elements) {
+            switch (value) {
+                case ATTR:
+                    return elements.attr(attribute);
+                case HTML:
+                    return elements.html();
+                default:
+                    return elements.text();
+            }
+        }
+    }
+
+    /**
+     * first element and count of the ids, classes and tags layout keys start from, as Page.add counts them.
+     */
+    private static class Anchors {
+        final Counts ids;
+        final Counts classNames;
+        final Counts tags;
+
+        Anchors(Set<String> ids, Set<String> classNames, Set<String> tags) {
+            this.ids = new Counts(ids);
+            this.classNames = new Counts(classNames);
+            this.tags = new Counts(tags);
+        }
+
+        void add(Element element, String id, String[] names) {
+            if (element.hasAttr("id")) {
+                ids.add(id, element);
+            }
+            if (names != null) {
+                for (String name : names) {
+                    classNames.add(name, element);
+                }
+            }
+            tags.add(element.tagName(), element);
+        }
+    }
+
+    private static class Counts {
+        final Set<String> names;
+        final Map<String, Element> first = Maps.newHashMap();
+        final Map<String, Integer> count = Maps.newHashMap();
+
+        Counts(Set<String> names) {
+            this.names = names;
+        }
+
+        void add(String name, Element element) {
+            if (!names.contains(name)) {
+                return;
+            }
+            first.putIfAbsent(name, element);
+            count.merge(name, 1, Integer::sum);
+        }
+
+        Element unique(String name) {
+            Integer n = count.get(name);
+            return n != null && n == 1 ? first.get(name) : null;
+        }
+    }
+}
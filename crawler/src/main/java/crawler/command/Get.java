@@ -0,0 +1,201 @@
+package crawler.command;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Stopwatch;
+import crawler.Command;
+import crawler.Context;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * fetches the context url and puts the response body as byte[], or as a Body when streaming,
+ * skipped when the body is already there.
+ *
+ * @author chi
+ */
+public class Get implements Command {
+    private final Logger logger = LoggerFactory.getLogger(Get.class);
+    private final String userAgent;
+    private HttpClient httpClient;
+    private Sessions sessions;
+    private boolean streaming;
+    private boolean compression = true;
+    private ResponseCache cache;
+
+    public Get(HttpClient httpClient, String userAgent, String cookies) {
+        this.httpClient = httpClient;
+        this.userAgent = userAgent;
+        this.sessions = Sessions.perThread(cookies);
+    }
+
+    /**
+     * leaves the response body on the connection for ToDocument to parse from the stream, instead of copying it into byte[].
+     */
+    public Get streaming(boolean streaming) {
+        this.streaming = streaming;
+        return this;
+    }
+
+    public Get httpClient(HttpClient httpClient) {
+        this.httpClient = httpClient;
+        return this;
+    }
+
+    /**
+     * cookie sessions of the requests, by default every thread has its own seeded with the cookies of the constructor.
+     */
+    public Get sessions(Sessions sessions) {
+        this.sessions = sessions;
+        return this;
+    }
+
+    /**
+     * asks for gzip, deflate or brotli bodies and decodes them while they are read, on by default.
+     * the client must leave content encoding alone, see HttpConfig.
+     */
+    public Get compression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * keeps bodies under directory and revalidates them with If-None-Match and If-Modified-Since,
+     * a 304 puts the cached body into the context like a fresh one. bodies are buffered when caching.
+     */
+    public Get cache(File directory) {
+        this.cache = new ResponseCache(directory);
+        return this;
+    }
+
+    @Override
+    public boolean execute(Context context) {
+        if (context.get(byte[].class) != null || context.get(Body.class) != null) {
+            return true;
+        }
+
+        HttpGet get = request(context);
+        boolean release = true;
+        try {
+            Stopwatch w = Stopwatch.createStarted();
+            HttpResponse response = httpClient.execute(get, httpClientContext(context));
+            ContentEncoding.decode(response);
+            checkStatus(context, response);
+            if (streaming && cache == null) {
+                context.put(Body.class, Body.of(response.getEntity(), get::releaseConnection));
+                release = false;
+            } else {
+                read(context, response);
+            }
+            logger.debug("get {}, {}ms", context.url(), w.elapsed(TimeUnit.MILLISECONDS));
+            return true;
+        } catch (Exception e) {
+            logger.debug("failed to get {}", context.url(), e);
+            throw new RuntimeException(e);
+        } finally {
+            if (release) {
+                get.releaseConnection();
+            }
+        }
+    }
+
+    public HttpGet request(Context context) {
+        HttpGet get = new HttpGet(context.url());
+        get.setHeader("User-Agent", userAgent);
+        if (compression) {
+            ContentEncoding.accept(get);
+        }
+        if (cache != null) {
+            ResponseCache.Entry entry = cache.get(context.url());
+            if (entry != null) {
+                context.put(ResponseCache.Entry.class, entry);
+                cache.validate(get, entry);
+            }
+        }
+        return get;
+    }
+
+    /**
+     * @return a new http context on the session of the context url
+     */
+    public HttpClientContext httpClientContext(Context context) {
+        return sessions.context(context.url());
+    }
+
+    /**
+     * reads a response which is already in memory, like the ones of the async client.
+     */
+    public void read(Context context, HttpResponse response) throws IOException {
+        ContentEncoding.decode(response);
+        checkStatus(context, response);
+        if (cache != null) {
+            readCached(context, response);
+        } else if (streaming) {
+            context.put(Body.class, Body.of(response.getEntity(), null));
+        } else {
+            byte[] content = EntityUtils.toByteArray(response.getEntity());
+            context.put(byte[].class, content);
+        }
+    }
+
+    /**
+     * fails 5xx and 429 responses with HttpStatusException so they can be retried, other statuses are read as before.
+     */
+    private void checkStatus(Context context, HttpResponse response) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == 429) {
+            EntityUtils.consume(response.getEntity());
+            throw new HttpStatusException(context.url(), status, retryAfter(response.getFirstHeader("Retry-After")));
+        }
+    }
+
+    static long retryAfter(Header header) {
+        if (header == null) {
+            return 0;
+        }
+        String value = header.getValue().trim();
+        if (!value.isEmpty() && CharMatcher.DIGIT.matchesAllOf(value)) {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        }
+        Date date = DateUtils.parseDate(value);
+        return date == null ? 0 : Math.max(0, date.getTime() - System.currentTimeMillis());
+    }
+
+    private void readCached(Context context, HttpResponse response) throws IOException {
+        ResponseCache.Entry entry = context.get(ResponseCache.Entry.class);
+        int status = response.getStatusLine().getStatusCode();
+        byte[] content;
+        String contentType;
+        if (entry != null && status == HttpStatus.SC_NOT_MODIFIED) {
+            EntityUtils.consume(response.getEntity());
+            content = cache.body(entry);
+            contentType = entry.contentType;
+            logger.debug("not modified {}", context.url());
+        } else {
+            content = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+            Header header = response.getFirstHeader("Content-Type");
+            contentType = header == null ? null : header.getValue();
+            if (status == HttpStatus.SC_OK) {
+                cache.put(context.url(), response, content);
+            }
+        }
+
+        if (streaming) {
+            context.put(Body.class, Body.of(content, Body.charset(contentType)));
+        } else {
+            context.put(byte[].class, content);
+        }
+    }
+}
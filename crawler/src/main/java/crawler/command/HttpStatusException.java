@@ -0,0 +1,32 @@
+package crawler.command;
+
+import java.io.IOException;
+
+/**
+ * response status telling the request may work later, 5xx or 429.
+ *
+ * @author chi
+ */
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final long retryAfter;
+
+    public HttpStatusException(String url, int status, long retryAfter) {
+        super(status + " " + url);
+        this.status = status;
+        this.retryAfter = retryAfter;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    /**
+     * @return millis the server asked to wait with Retry-After, 0 if it did not
+     */
+    public long retryAfter() {
+        return retryAfter;
+    }
+}
@@ -7,44 +7,52 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Attribute;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.nodes.Node;
 import org.jsoup.select.Elements;
 
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
+ * layout key index over a document, built on the first call which needs it, so a page used only through
+ * select() never walks the document.
+ *
  * @author chi
  */
 public class Page implements Iterable<Element> {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+    static final Pattern STEP = Pattern.compile("(.+)\\[(\\d+)\\]");
+
     private final Document document;
-    private final Map<String, Element> cache = Maps.newHashMap();
-    private final Map<String, List<Element>> idCache = Maps.newHashMap();
-    private final Map<String, List<Element>> classNameCache = Maps.newHashMap();
-    private final Map<String, List<Element>> tagCache = Maps.newHashMap();
+    private final Template template;
+    private final Map<String, Integer> idCount = Maps.newHashMap();
+    private final Map<String, Integer> classNameCount = Maps.newHashMap();
+    private final Map<String, Integer> tagCount = Maps.newHashMap();
+    private final Map<Element, String[]> classNames = new IdentityHashMap<>();
+    private final Map<Element, String> ancestorKeys = new IdentityHashMap<>();
     private final List<Element> nodes = Lists.newArrayList();
+    private Map<String, Element> cache;
+    private boolean indexed;
 
     public Page(Document document) {
-        this.document = document;
-
-        Deque<Element> nodes = new LinkedList<>();
-        nodes.add(document);
-
-        while (!nodes.isEmpty()) {
-            Element node = nodes.pollFirst();
-            add(node);
-            Lists.reverse(node.children()).forEach(nodes::addFirst);
-        }
+        this(document, null);
+    }
 
-        for (Element node : this) {
-            cache.put(layoutKey(node), node);
-        }
+    /**
+     * keys are looked up in the paths template learned on pages before, the index is only built for the ones
+     * it misses.
+     */
+    Page(Document document, Template template) {
+        this.document = document;
+        this.template = template;
     }
 
     public static void help(String url) throws Exception {
@@ -67,92 +75,156 @@ public class Page implements Iterable<Element> {
     }
 
     public Element element(String key) {
-        return cache.get(key);
+        if (template != null && !indexed) {
+            Element element = template.element(document, key);
+            if (element != null) {
+                return element;
+            }
+        }
+
+        index();
+        if (cache == null) {
+            Map<String, Element> keys = Maps.newHashMapWithExpectedSize(nodes.size());
+            for (Element node : this) {
+                keys.put(layoutKey(node), node);
+            }
+            cache = keys;
+        }
+        Element element = cache.get(key);
+        if (template != null && element != null) {
+            template.learn(key, element);
+        }
+        return element;
+    }
+
+    /**
+     * splits a key below an ancestor, like ".list li[0]" or " #document html[0] body[1]" below the document root.
+     *
+     * @return the anchor, null for the document root, followed by the steps, or null if key is a single id,
+     * class or tag
+     */
+    static String[] steps(String key) {
+        boolean root = key.startsWith(" ");
+        String[] parts = key.trim().split(" ");
+        if (!root && parts.length == 1) {
+            return null;
+        }
+        for (int i = 1; i < parts.length; i++) {
+            if (!STEP.matcher(parts[i]).matches()) {
+                return null;
+            }
+        }
+        if (root) {
+            if (!parts[0].equals("#document")) {
+                return null;
+            }
+            parts[0] = null;
+        }
+        return parts;
     }
 
     public Elements select(String key) {
         return document.select(key);
     }
 
+    private void index() {
+        if (indexed) {
+            return;
+        }
+        indexed = true;
+
+        Deque<Element> nodes = new ArrayDeque<>();
+        nodes.push(document);
+
+        while (!nodes.isEmpty()) {
+            Element node = nodes.pop();
+            add(node);
+            Elements children = node.children();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                nodes.push(children.get(i));
+            }
+        }
+    }
+
     Page add(Element node) {
         nodes.add(node);
 
         if (node.hasAttr("id")) {
-            if (idCache.containsKey(node.attr("id"))) {
-                idCache.get(node.attr("id")).add(node);
-            } else {
-                idCache.put(node.attr("id"), Lists.newArrayList(node));
-            }
+            idCount.merge(node.attr("id"), 1, Integer::sum);
         }
 
         if (node.hasAttr("class")) {
-            String classNames = node.attr("class");
-            for (String className : classNames.split("\\s")) {
-                if (classNameCache.containsKey(className)) {
-                    classNameCache.get(className).add(node);
-                } else {
-                    classNameCache.put(className, Lists.newArrayList(node));
-                }
+            String[] names = WHITESPACE.split(node.attr("class"));
+            classNames.put(node, names);
+            for (String className : names) {
+                classNameCount.merge(className, 1, Integer::sum);
             }
         }
 
-        String tagName = node.tagName();
-        if (tagCache.containsKey(tagName)) {
-            tagCache.get(tagName).add(node);
-        } else {
-            tagCache.put(tagName, Lists.newArrayList(node));
-        }
+        tagCount.merge(node.tagName(), 1, Integer::sum);
 
         return this;
     }
 
+    /**
+     * unique id or class of the node, else its unique tag, else the key of its closest ancestor
+     * with a unique id or class followed by the tag and child index of every element below it.
+     */
     String layoutKey(Element node) {
-        StringBuilder b = new StringBuilder();
-
-        Element current = node;
-
-        while (current != null) {
-            String id = getUniqueId(current);
-
-            if (!Strings.isNullOrEmpty(id)) {
-                b.insert(0, "#" + id);
-                break;
-            }
+        index();
+        String key = uniqueKey(node);
+        if (key != null) {
+            return key;
+        }
 
-            String className = getUniqueClassName(current);
+        String tagName = getUniqueTag(node);
+        if (tagName != null) {
+            return tagName;
+        }
 
-            if (!Strings.isNullOrEmpty(className)) {
-                b.insert(0, "." + className);
-                break;
-            }
+        return ancestorKey(node.parent()) + " " + nodeKey(node);
+    }
 
-            String tagName = getUniqueTag(node);
+    private String ancestorKey(Element node) {
+        if (node == null) {
+            return "";
+        }
 
-            if (!Strings.isNullOrEmpty(tagName)) {
-                b.insert(0, tagName);
-                break;
+        String key = ancestorKeys.get(node);
+        if (key == null) {
+            key = uniqueKey(node);
+            if (key == null) {
+                key = ancestorKey(node.parent()) + " " + nodeKey(node);
             }
+            ancestorKeys.put(node, key);
+        }
+        return key;
+    }
 
-            b.insert(0, " " + nodeKey(current));
-            current = current.parent();
+    private String uniqueKey(Element node) {
+        String id = getUniqueId(node);
+        if (!Strings.isNullOrEmpty(id)) {
+            return "#" + id;
         }
 
-        return b.toString();
+        String className = getUniqueClassName(node);
+        if (!Strings.isNullOrEmpty(className)) {
+            return "." + className;
+        }
+        return null;
     }
 
     String getUniqueId(Element node) {
         String id = node.attr("id");
-        if (idCache.containsKey(id) && idCache.get(id).size() == 1) {
-            return id;
-        }
-        return null;
+        Integer count = idCount.get(id);
+        return count != null && count == 1 ? id : null;
     }
 
     String getUniqueClassName(Element node) {
-        String classNames = node.attr("class");
-        for (String className : classNames.split("\\s")) {
-            if (classNameCache.containsKey(className)) {
-                if (classNameCache.get(className).size() == 1) {
+        String[] names = classNames.get(node);
+        if (names != null) {
+            for (String className : names) {
+                if (classNameCount.get(className) == 1) {
                     return className;
                 }
             }
@@ -161,26 +233,14 @@ public class Page implements Iterable<Element> {
     }
 
     String getUniqueTag(Element element) {
-        if (tagCache.containsKey(element.tagName()) && tagCache.get(element.tagName()).size() == 1) {
-            return element.tagName();
-        }
-        return null;
+        return tagCount.get(element.tagName()) == 1 ? element.tagName() : null;
     }
 
     String nodeKey(Element node) {
         if (node.parent() == null) {
             return node.nodeName();
         }
-
-        Node parent = node.parent();
-        for (int i = 0; i < parent.childNodes().size(); i++) {
-            Node n = parent.childNodes().get(i);
-            if (node.equals(n)) {
-                return node.tagName() + '[' + i + ']';
-            }
-        }
-
-        return null;
+        return node.tagName() + '[' + node.siblingIndex() + ']';
     }
 
     public String text(String key) {
@@ -234,8 +294,13 @@ public class Page implements Iterable<Element> {
         return element.attr(name);
     }
 
+    Document document() {
+        return document;
+    }
+
     @Override
     public Iterator<Element> iterator() {
+        index();
         return nodes.iterator();
     }
 }
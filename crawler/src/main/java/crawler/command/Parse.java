@@ -1,22 +1,30 @@
 package crawler.command;
 
+import com.google.common.collect.ImmutableSet;
 import crawler.Command;
 import crawler.Context;
+import crawler.Key;
 import org.jsoup.nodes.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author chi
  */
 public abstract class Parse implements Command {
+    private static final Set<Key<?>> DOCUMENT = ImmutableSet.of(Key.of(Document.class), Key.of(Page.class));
+
     private final Logger logger = LoggerFactory.getLogger(Parse.class);
+    private Template template;
+    private boolean keepDocument;
 
     @Override
     public boolean execute(Context context) {
-        logger.info("parse {}", context.url());
+        logger.debug("parse {}", context.url());
         Map<String, Object> values = parse(context);
         context.put(Map.class, values);
         return true;
@@ -24,7 +32,42 @@ public abstract class Parse implements Command {
 
     protected abstract Map<String, Object> parse(Context context);
 
+    /**
+     * keeps the document after parsing, for commands after this one which read it.
+     */
+    public Parse keepDocument() {
+        this.keepDocument = true;
+        return this;
+    }
+
+    /**
+     * pages of the pipe share a template, keys are found by the paths this parse learned on the pages before and
+     * the index is only built when one of them does not fit. a learned path is not checked for the uniqueness of
+     * its anchor, a key Page would not find on a page repeating its id or class still gives the element.
+     */
+    public Parse learnPaths() {
+        this.template = new Template();
+        return this;
+    }
+
+    /**
+     * the document is dropped after the last parse of the pipe, unless keepDocument or the input reads it.
+     */
+    @Override
+    public Set<Key<?>> consumes() {
+        return keepDocument ? Collections.emptySet() : DOCUMENT;
+    }
+
+    /**
+     * the page is kept in the context, so every parse of a pipe shares one layout key index, see learnPaths().
+     */
     protected Page page(Context context) {
-        return new Page(context.get(Document.class));
+        Document document = context.get(Document.class);
+        Page page = context.get(Page.class);
+        if (page == null || page.document() != document) {
+            page = new Page(document, template);
+            context.put(Page.class, page);
+        }
+        return page;
     }
 }
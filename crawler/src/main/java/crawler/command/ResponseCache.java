@@ -0,0 +1,162 @@
+package crawler.command;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * bodies of 200 responses on disk, gzipped under the sha1 of the content so pages with the same content are kept once,
+ * and a small entry per url with the validators of the response pointing to its body.
+ * files are written to a temp file and renamed, a crash never leaves a half written entry or body.
+ *
+ * @author chi
+ */
+class ResponseCache {
+    private final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+    private final File urls;
+    private final File bodies;
+
+    ResponseCache(File directory) {
+        this.urls = new File(directory, "urls");
+        this.bodies = new File(directory, "bodies");
+        Preconditions.checkState(urls.isDirectory() || urls.mkdirs(), "failed to create %s", urls);
+        Preconditions.checkState(bodies.isDirectory() || bodies.mkdirs(), "failed to create %s", bodies);
+    }
+
+    /**
+     * @return the cached entry of the url, null if there is none or it can not be read
+     */
+    Entry get(String url) {
+        File file = file(urls, sha1(url.getBytes(Charsets.UTF_8)), "");
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            logger.warn("failed to read cache entry {} of {}", file, url, e);
+            return null;
+        }
+        if (!url.equals(properties.getProperty("url"))) {
+            return null;
+        }
+        Entry entry = new Entry(properties.getProperty("etag"), properties.getProperty("lastModified"),
+            properties.getProperty("contentType"), properties.getProperty("body"));
+        return file(bodies, entry.body, ".gz").exists() ? entry : null;
+    }
+
+    void put(String url, HttpResponse response, byte[] content) throws IOException {
+        String etag = value(response.getFirstHeader("ETag"));
+        String lastModified = value(response.getFirstHeader("Last-Modified"));
+        if (etag == null && lastModified == null) {
+            return;
+        }
+
+        String body = sha1(content);
+        File bodyFile = file(bodies, body, ".gz");
+        if (!bodyFile.exists()) {
+            write(bodyFile, out -> {
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+                    gzip.write(content);
+                }
+            });
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("url", url);
+        properties.setProperty("body", body);
+        set(properties, "etag", etag);
+        set(properties, "lastModified", lastModified);
+        set(properties, "contentType", value(response.getFirstHeader("Content-Type")));
+        write(file(urls, sha1(url.getBytes(Charsets.UTF_8)), ""), out -> properties.store(out, null));
+    }
+
+    byte[] body(Entry entry) throws IOException {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file(bodies, entry.body, ".gz")), 8192)) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+
+    /**
+     * asks the server to answer 304 when the cached body is still current.
+     */
+    void validate(HttpGet get, Entry entry) {
+        if (entry.etag != null) {
+            get.setHeader("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            get.setHeader("If-Modified-Since", entry.lastModified);
+        }
+    }
+
+    private void write(File file, Writer writer) throws IOException {
+        File parent = file.getParentFile();
+        Preconditions.checkState(parent.isDirectory() || parent.mkdirs(), "failed to create %s", parent);
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                writer.write(out);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (temp.exists() && !temp.delete()) {
+                logger.warn("failed to delete {}", temp);
+            }
+        }
+    }
+
+    private File file(File root, String name, String suffix) {
+        return new File(new File(root, name.substring(0, 2)), name + suffix);
+    }
+
+    private String sha1(byte[] bytes) {
+        return Hashing.sha1().hashBytes(bytes).toString();
+    }
+
+    private static String value(Header header) {
+        return header == null ? null : header.getValue();
+    }
+
+    private static void set(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    static class Entry {
+        final String etag;
+        final String lastModified;
+        final String contentType;
+        final String body;
+
+        Entry(String etag, String lastModified, String contentType, String body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+}
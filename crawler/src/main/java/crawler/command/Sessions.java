@@ -0,0 +1,151 @@
+package crawler.command;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import crawler.scheduler.HostScheduler;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.CookieSpecProvider;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.apache.http.impl.cookie.BestMatchSpecFactory;
+import org.apache.http.impl.cookie.BrowserCompatSpecFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * cookie stores of get, a session is picked by the thread running the request or by the host of the url,
+ * so workers do not share and lock one store. every session starts with one of the login cookie strings,
+ * handed out round robin, the cookies are scoped to each host the session talks to.
+ * an http context is created per request on top of the session, they are not safe to share between requests.
+ *
+ * @author chi
+ */
+public class Sessions {
+    private static final Registry<CookieSpecProvider> COOKIE_SPECS = RegistryBuilder.<CookieSpecProvider>create()
+        .register(CookieSpecs.BEST_MATCH, new BestMatchSpecFactory())
+        .register(CookieSpecs.BROWSER_COMPATIBILITY, new BrowserCompatSpecFactory())
+        .build();
+
+    private final Scope scope;
+    private final List<List<Cookie>> logins = Lists.newArrayList();
+    private final AtomicInteger created = new AtomicInteger();
+    private final ThreadLocal<Session> threadSessions = ThreadLocal.withInitial(this::newSession);
+    private final ConcurrentMap<String, Session> hostSessions = new ConcurrentHashMap<>();
+    private final Session shared;
+
+    Sessions(Scope scope, String... logins) {
+        this.scope = scope;
+        for (String cookies : logins) {
+            if (!Strings.isNullOrEmpty(cookies)) {
+                this.logins.add(parseCookies(cookies));
+            }
+        }
+        this.shared = scope == Scope.SHARED ? newSession() : null;
+    }
+
+    /**
+     * one session for every request, cookies set by any response are sent by all workers.
+     */
+    public static Sessions shared(String cookies) {
+        return new Sessions(Scope.SHARED, cookies);
+    }
+
+    /**
+     * a session per worker thread, the default of get. in async mode requests are started by the input thread
+     * and the retry timer, so there are only a couple of sessions.
+     */
+    public static Sessions perThread(String... logins) {
+        return new Sessions(Scope.THREAD, logins);
+    }
+
+    /**
+     * a session per host, requests to the same host always carry the same cookies whichever thread runs them.
+     */
+    public static Sessions perHost(String... logins) {
+        return new Sessions(Scope.HOST, logins);
+    }
+
+    static List<Cookie> parseCookies(String cookies) {
+        List<Cookie> list = Lists.newArrayList();
+
+        for (String cookieStr : cookies.split(";")) {
+            int index = cookieStr.indexOf("=");
+            if (index > 0) {
+                BasicClientCookie cookie = new BasicClientCookie(cookieStr.substring(0, index).trim(),
+                    cookieStr.substring(index + 1).trim());
+                cookie.setVersion(0);
+                cookie.setPath("/");
+                list.add(cookie);
+            }
+        }
+        return list;
+    }
+
+    public HttpClientContext context(String url) {
+        String host = HostScheduler.host(url);
+        Session session;
+        switch (scope) {
+            case THREAD:
+                session = threadSessions.get();
+                break;
+            case HOST:
+                session = hostSessions.computeIfAbsent(host, h -> newSession());
+                break;
+            default:
+                session = shared;
+        }
+        return session.context(host);
+    }
+
+    /**
+     * @return number of sessions created so far
+     */
+    public int size() {
+        return created.get();
+    }
+
+    private Session newSession() {
+        int index = created.getAndIncrement();
+        return new Session(logins.isEmpty() ? Lists.newArrayList() : logins.get(index % logins.size()));
+    }
+
+    enum Scope {
+        SHARED, THREAD, HOST
+    }
+
+    private static class Session {
+        final CookieStore cookieStore = new BasicCookieStore();
+        final List<Cookie> login;
+        final Set<String> hosts = ConcurrentHashMap.newKeySet();
+
+        Session(List<Cookie> login) {
+            this.login = login;
+        }
+
+        HttpClientContext context(String host) {
+            if (!login.isEmpty() && hosts.add(host)) {
+                for (Cookie c : login) {
+                    BasicClientCookie cookie = new BasicClientCookie(c.getName(), c.getValue());
+                    cookie.setVersion(0);
+                    cookie.setDomain(host);
+                    cookie.setPath("/");
+                    cookieStore.addCookie(cookie);
+                }
+            }
+
+            HttpClientContext context = HttpClientContext.create();
+            context.setCookieSpecRegistry(COOKIE_SPECS);
+            context.setCookieStore(cookieStore);
+            return context;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package crawler.command;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * 64 bit simhash of the word shingles of a text, texts sharing most shingles get fingerprints a few bits apart.
+ * words are runs of letters and digits, lower cased, so markup and spacing changes move the fingerprint little.
+ *
+ * @author chi
+ */
+class SimHash {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private static final int SHINGLE = 3;
+
+    private SimHash() {
+    }
+
+    static long fingerprint(CharSequence text) {
+        int[] weights = new int[64];
+        long[] window = new long[SHINGLE];
+        int words = 0;
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                window[words % SHINGLE] = HASH.hashUnencodedChars(word).asLong();
+                word.setLength(0);
+                words++;
+                if (words >= SHINGLE) {
+                    add(weights, shingle(window, words));
+                }
+            }
+        }
+        if (words > 0 && words < SHINGLE) {
+            add(weights, shingle(window, words));
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * mixes the hashes of the last words in order, so the same words in another order make another shingle.
+     */
+    private static long shingle(long[] window, int words) {
+        long h = 0;
+        for (int i = Math.max(0, words - SHINGLE); i < words; i++) {
+            h = h * 0x9E3779B97F4A7C15L + window[i % SHINGLE];
+        }
+        return h ^ (h >>> 29);
+    }
+
+    private static void add(int[] weights, long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+    }
+}
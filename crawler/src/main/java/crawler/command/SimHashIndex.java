@@ -0,0 +1,101 @@
+package crawler.command;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * fingerprints within maxDistance bits of each other, found without comparing against all of them.
+ * the 64 bits are cut into maxDistance + 1 bands, two fingerprints that close agree on at least one whole band,
+ * so only fingerprints sharing a band with the probe are compared.
+ * every band is a hash table of int chains through the fingerprint array, about 16 + 4 * bands bytes per fingerprint
+ * with the hash of the url it came from.
+ *
+ * @author chi
+ */
+class SimHashIndex {
+    private static final int MAX_TABLE_BITS = 20;
+
+    private final int maxDistance;
+    private final int bands;
+    private final int bandBits;
+    private final int[][] heads;
+    private int[][] next;
+    private long[] fingerprints = new long[1024];
+    private long[] owners = new long[1024];
+    private int size;
+
+    SimHashIndex(int maxDistance) {
+        Preconditions.checkState(maxDistance >= 0 && maxDistance < 16, "max distance must be between 0 and 15");
+        this.maxDistance = maxDistance;
+        this.bands = maxDistance + 1;
+        this.bandBits = 64 / bands;
+        int tableBits = Math.min(bandBits, MAX_TABLE_BITS);
+        this.heads = new int[bands][1 << tableBits];
+        this.next = new int[bands][fingerprints.length];
+        for (int[] head : heads) {
+            Arrays.fill(head, -1);
+        }
+    }
+
+    /**
+     * adds the fingerprint unless a near one is there already, a near one of the same owner is no duplicate,
+     * like a page fetched again after a failure, and is not added twice.
+     *
+     * @param owner hash of the url of the page
+     * @return false if a fingerprint of another owner at most maxDistance bits away was found
+     */
+    synchronized boolean add(long fingerprint, long owner) {
+        boolean own = false;
+        for (int band = 0; band < bands; band++) {
+            for (int i = heads[band][slot(band, fingerprint)]; i >= 0; i = next[band][i]) {
+                if (band(band, fingerprints[i]) == band(band, fingerprint)
+                    && SimHash.distance(fingerprints[i], fingerprint) <= maxDistance) {
+                    if (owners[i] != owner) {
+                        return false;
+                    }
+                    own = true;
+                }
+            }
+        }
+        if (own) {
+            return true;
+        }
+
+        if (size == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, size * 2);
+            owners = Arrays.copyOf(owners, size * 2);
+            for (int band = 0; band < bands; band++) {
+                next[band] = Arrays.copyOf(next[band], size * 2);
+            }
+        }
+        fingerprints[size] = fingerprint;
+        owners[size] = owner;
+        for (int band = 0; band < bands; band++) {
+            int slot = slot(band, fingerprint);
+            next[band][size] = heads[band][slot];
+            heads[band][slot] = size;
+        }
+        size++;
+        return true;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * the last band takes the bits left over when 64 does not divide evenly.
+     */
+    private long band(int band, long fingerprint) {
+        int shift = band * bandBits;
+        int bits = band == bands - 1 ? 64 - shift : bandBits;
+        return bits == 64 ? fingerprint : (fingerprint >>> shift) & ((1L << bits) - 1);
+    }
+
+    private int slot(int band, long fingerprint) {
+        long value = band(band, fingerprint);
+        long mixed = value * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> (64 - Integer.numberOfTrailingZeros(heads[band].length)));
+    }
+}
@@ -0,0 +1,141 @@
+package crawler.command;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * child index path from the document root of every layout key found on pages of one parse, which share a
+ * template. a path is followed on the next pages and its element is checked against the key: the tags and child
+ * indexes up to the anchor of the key, and the id, class or tag of the anchor. uniqueness is not checked, that
+ * needs the index, it is taken from the template. a path which does not fit is learned again from the index.
+ *
+ * @author chi
+ */
+class Template {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+
+    private final Map<String, Path> paths = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @return element of key by its learned path, null if there is none or it does not fit the key
+     */
+    Element element(Document document, String key) {
+        Path path = paths.get(key);
+        Element element = path == null ? null : path.follow(document);
+        if (element != null && fits(key, element)) {
+            hits.incrementAndGet();
+            return element;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    void learn(String key, Element element) {
+        Path path = paths.get(key);
+        if (path == null || !path.leadsTo(element)) {
+            paths.put(key, Path.of(element));
+        }
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    static boolean fits(String key, Element element) {
+        String[] steps = Page.steps(key);
+        if (steps == null) {
+            return is(key, element);
+        }
+
+        Element node = element;
+        for (int i = steps.length - 1; i > 0; i--) {
+            Matcher step = Page.STEP.matcher(steps[i]);
+            step.matches();
+            if (node == null || !node.tagName().equals(step.group(1))
+                || node.siblingIndex() != Integer.parseInt(step.group(2))) {
+                return false;
+            }
+            node = node.parent();
+        }
+        return steps[0] == null ? node instanceof Document : node != null && is(steps[0], node);
+    }
+
+    private static boolean is(String anchor, Element element) {
+        if (anchor.startsWith("#")) {
+            return element.id().equals(anchor.substring(1));
+        }
+        if (anchor.startsWith(".")) {
+            if (!element.hasAttr("class")) {
+                return false;
+            }
+            String className = anchor.substring(1);
+            for (String name : WHITESPACE.split(element.attr("class"))) {
+                if (name.equals(className)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return element.tagName().equals(anchor);
+    }
+
+    private static class Path {
+        final int[] indexes;
+        final String[] tags;
+
+        Path(int[] indexes, String[] tags) {
+            this.indexes = indexes;
+            this.tags = tags;
+        }
+
+        static Path of(Element element) {
+            int depth = 0;
+            for (Element node = element; node.parent() != null; node = node.parent()) {
+                depth++;
+            }
+            int[] indexes = new int[depth];
+            String[] tags = new String[depth];
+            Element node = element;
+            for (int i = depth - 1; i >= 0; i--) {
+                indexes[i] = node.siblingIndex();
+                tags[i] = node.tagName();
+                node = node.parent();
+            }
+            return new Path(indexes, tags);
+        }
+
+        Element follow(Document document) {
+            Element element = document;
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] >= element.childNodeSize()) {
+                    return null;
+                }
+                Node child = element.childNode(indexes[i]);
+                if (!(child instanceof Element) || !((Element) child).tagName().equals(tags[i])) {
+                    return null;
+                }
+                element = (Element) child;
+            }
+            return element;
+        }
+
+        boolean leadsTo(Element element) {
+            Path path = of(element);
+            return Arrays.equals(indexes, path.indexes) && Arrays.equals(tags, path.tags);
+        }
+    }
+}
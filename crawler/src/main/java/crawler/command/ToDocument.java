@@ -1,27 +1,83 @@
 package crawler.command;
 
+import com.google.common.collect.ImmutableSet;
 import crawler.Command;
 import crawler.Context;
+import crawler.Key;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * @author chi
  */
 public class ToDocument implements Command {
+    private static final Set<Key<?>> BODY = ImmutableSet.of(Key.of(byte[].class), Key.of(Body.class));
+
     private final Charset charset;
+    private boolean keepBytes;
+
+    /**
+     * takes the charset from the content type header, or from the meta tags if the header has none.
+     */
+    public ToDocument() {
+        this(null);
+    }
 
     public ToDocument(Charset charset) {
         this.charset = charset;
     }
 
+    /**
+     * keeps the body after parsing, for commands after this one which read byte[]. a streamed body is buffered.
+     */
+    public ToDocument keepBytes() {
+        this.keepBytes = true;
+        return this;
+    }
+
     @Override
     public boolean execute(Context context) {
-        Document document = Jsoup.parse(new String(context.get(byte[].class), charset));
-        document.setBaseUri(context.url());
-        context.put(Document.class, document);
-        return true;
+        Body body = context.get(Body.class);
+        if (body != null && !body.readable() && context.get(Document.class) != null) {
+            // an earlier pipe of the url streamed the body into this document
+            return true;
+        }
+        try {
+            Document document;
+            if (body != null && !keepBytes && !body.buffered()) {
+                document = Jsoup.parse(body.stream(), charsetName(body), context.url());
+            } else {
+                byte[] content = Body.bytesOf(context);
+                context.put(byte[].class, content);
+                document = charset != null ? Jsoup.parse(new String(content, charset))
+                    : Jsoup.parse(new ByteArrayInputStream(content), charsetName(body), context.url());
+            }
+            document.setBaseUri(context.url());
+            context.put(Document.class, document);
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * the raw body is dropped once the document is built, unless keepBytes.
+     */
+    @Override
+    public Set<Key<?>> consumes() {
+        return keepBytes ? Collections.emptySet() : BODY;
+    }
+
+    private String charsetName(Body body) {
+        if (charset != null) {
+            return charset.name();
+        }
+        return body == null || body.charset() == null ? null : body.charset().name();
     }
 }
@@ -7,6 +7,7 @@ import crawler.Input;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
 
 /**
  * @author chi
@@ -35,6 +36,11 @@ public class ArrayInput implements Input {
         };
     }
 
+    @Override
+    public Spliterator<Context> spliterator() {
+        return new IndexSpliterator(index -> new Context(urls.get(index)), 0, urls.size());
+    }
+
     @Override
     public void end(Context context) {
     }
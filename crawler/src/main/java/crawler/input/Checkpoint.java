@@ -0,0 +1,74 @@
+package crawler.input;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * writes the bloom filter on a background thread to a temp file and renames it over the backup file,
+ * a crash during the write leaves the previous backup intact. requests while a write is queued are merged.
+ *
+ * @author chi
+ */
+class Checkpoint implements Closeable {
+    private final Logger logger = LoggerFactory.getLogger(Checkpoint.class);
+    private final ConcurrentBloomFilter filter;
+    private final File file;
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("seed-input-checkpoint")
+        .setDaemon(true)
+        .build());
+
+    Checkpoint(ConcurrentBloomFilter filter, File file) {
+        this.filter = filter;
+        this.file = file;
+    }
+
+    void request() {
+        if (queued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                queued.set(false);
+                try {
+                    write();
+                } catch (IOException e) {
+                    logger.error("failed to write bloom filter to {}", file, e);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        write();
+    }
+
+    private synchronized void write() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+            filter.writeTo(buffered);
+            buffered.flush();
+            out.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,132 @@
+package crawler.input;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * bloom filter safe for concurrent use, bits live in an AtomicLongArray so mightContain never locks,
+ * put locks one of the striped locks picked by the hash so only one caller wins the same url.
+ * hashing and serialized form are the same as guava's BloomFilter with the MURMUR128_MITZ_64 strategy,
+ * files written by either can be read by the other.
+ *
+ * @author chi
+ */
+public class ConcurrentBloomFilter {
+    private static final int MURMUR128_MITZ_64 = 1;
+    private static final double DEFAULT_FPP = 0.03;
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int numHashFunctions;
+    private final Charset charset;
+    private final Striped<Lock> locks = Striped.lock(256);
+
+    ConcurrentBloomFilter(AtomicLongArray bits, int numHashFunctions, Charset charset) {
+        this.bits = bits;
+        this.bitSize = (long) bits.length() * Long.SIZE;
+        this.numHashFunctions = numHashFunctions;
+        this.charset = charset;
+    }
+
+    public static ConcurrentBloomFilter create(long expectedInsertions, Charset charset) {
+        long numBits = (long) (-expectedInsertions * Math.log(DEFAULT_FPP) / (Math.log(2) * Math.log(2)));
+        int numHashFunctions = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        int words = (int) ((numBits + Long.SIZE - 1) / Long.SIZE);
+        return new ConcurrentBloomFilter(new AtomicLongArray(words), numHashFunctions, charset);
+    }
+
+    public static ConcurrentBloomFilter readFrom(InputStream in, Charset charset) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int strategy = data.readByte();
+        if (strategy != MURMUR128_MITZ_64) {
+            throw new IOException("unsupported bloom filter strategy " + strategy);
+        }
+        int numHashFunctions = data.readUnsignedByte();
+        int words = data.readInt();
+        AtomicLongArray bits = new AtomicLongArray(words);
+        for (int i = 0; i < words; i++) {
+            bits.set(i, data.readLong());
+        }
+        return new ConcurrentBloomFilter(bits, numHashFunctions, charset);
+    }
+
+    public boolean mightContain(String value) {
+        long[] hash = hash(value);
+        long combinedHash = hash[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            if (!get((combinedHash & Long.MAX_VALUE) % bitSize)) {
+                return false;
+            }
+            combinedHash += hash[1];
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the value was not in the filter, concurrent puts of the same value return true only once
+     */
+    public boolean put(String value) {
+        long[] hash = hash(value);
+        Lock lock = locks.get(hash[0]);
+        lock.lock();
+        try {
+            boolean changed = false;
+            long combinedHash = hash[0];
+            for (int i = 0; i < numHashFunctions; i++) {
+                changed |= set((combinedHash & Long.MAX_VALUE) % bitSize);
+                combinedHash += hash[1];
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * writes a fuzzy snapshot while puts go on, bits set during the write may or may not be included.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(MURMUR128_MITZ_64);
+        data.writeByte(numHashFunctions);
+        data.writeInt(bits.length());
+        for (int i = 0; i < bits.length(); i++) {
+            data.writeLong(bits.get(i));
+        }
+        data.flush();
+    }
+
+    private long[] hash(String value) {
+        ByteBuffer bytes = ByteBuffer.wrap(Hashing.murmur3_128().hashString(value, charset).asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        return new long[]{bytes.getLong(0), bytes.getLong(8)};
+    }
+
+    private boolean get(long index) {
+        return (bits.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    private boolean set(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        while (true) {
+            long current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+}
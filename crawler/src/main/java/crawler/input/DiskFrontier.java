@@ -0,0 +1,257 @@
+package crawler.input;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * append-only log of pending urls in memory-mapped segment files, only a small head of the log is decoded into heap.
+ * the read cursor is saved every CURSOR_INTERVAL polls and lags CURSOR_LAG urls behind, so urls still in flight
+ * when the crawl is killed are handed out again after restart.
+ *
+ * @author chi
+ */
+class DiskFrontier implements Frontier, Closeable {
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int NEXT_SEGMENT = -1;
+    private static final int HEAD_SIZE = 256;
+    private static final int CURSOR_INTERVAL = 1000;
+    private static final int CURSOR_LAG = 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(DiskFrontier.class);
+    private final File directory;
+    private final int segmentSize;
+    private final AtomicLong written = new AtomicLong();
+    private final Object writeLock = new Object();
+    private final Deque<Entry> head = new ArrayDeque<>();
+    private final long[] positions = new long[CURSOR_LAG];
+    private MappedByteBuffer writeBuffer;
+    private int writeSegment;
+    private MappedByteBuffer readBuffer;
+    private int readSegment;
+    private int firstSegment;
+    private long startPosition;
+    private long fetched;
+    private long polled;
+
+    DiskFrontier(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    DiskFrontier(File directory, int segmentSize) {
+        Preconditions.checkState(directory.isDirectory() || directory.mkdirs(), "failed to create %s", directory);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        open();
+    }
+
+    @Override
+    public void add(String url) {
+        byte[] bytes = url.getBytes(Charsets.UTF_8);
+        Preconditions.checkArgument(bytes.length + 8 <= segmentSize, "url too long, %s", url);
+
+        synchronized (writeLock) {
+            if (writeBuffer.remaining() < 4 + bytes.length) {
+                if (writeBuffer.remaining() >= 4) {
+                    writeBuffer.putInt(NEXT_SEGMENT);
+                }
+                writeSegment++;
+                writeBuffer = map(writeSegment);
+            }
+            // length goes last, a record torn by a crash reads as the end of the log
+            int position = writeBuffer.position();
+            writeBuffer.position(position + 4);
+            writeBuffer.put(bytes);
+            writeBuffer.putInt(position, bytes.length);
+            written.incrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized String poll() {
+        if (head.isEmpty()) {
+            fill();
+        }
+        Entry entry = head.poll();
+        if (entry == null) {
+            return null;
+        }
+
+        positions[(int) (polled % CURSOR_LAG)] = entry.position;
+        polled++;
+        if (polled % CURSOR_INTERVAL == 0) {
+            saveCursor(polled > CURSOR_LAG ? positions[(int) (polled % CURSOR_LAG)] : startPosition);
+        }
+        return entry.url;
+    }
+
+    @Override
+    public synchronized long size() {
+        return written.get() - fetched + head.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        saveCursor(polled > 0 ? positions[(int) ((polled - 1) % CURSOR_LAG)] : startPosition);
+        synchronized (writeLock) {
+            writeBuffer.force();
+        }
+    }
+
+    private void fill() {
+        long available = written.get() - fetched;
+        for (long i = 0; i < available && head.size() < HEAD_SIZE; i++) {
+            if (readBuffer.remaining() < 4 || readBuffer.getInt(readBuffer.position()) == NEXT_SEGMENT) {
+                readSegment++;
+                readBuffer = map(readSegment);
+            }
+            byte[] bytes = new byte[readBuffer.getInt()];
+            readBuffer.get(bytes);
+            fetched++;
+            head.add(new Entry(new String(bytes, Charsets.UTF_8), position(readSegment, readBuffer.position())));
+        }
+    }
+
+    private void open() {
+        int lastSegment = -1;
+        firstSegment = Integer.MAX_VALUE;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".segment"));
+        for (File file : files == null ? new File[0] : files) {
+            int segment = Integer.parseInt(file.getName().substring(0, file.getName().indexOf('.')));
+            firstSegment = Math.min(firstSegment, segment);
+            lastSegment = Math.max(lastSegment, segment);
+        }
+        if (lastSegment < 0) {
+            firstSegment = 0;
+            lastSegment = 0;
+        }
+
+        long cursor = readCursor();
+        if (cursor < 0 || segment(cursor) < firstSegment || segment(cursor) > lastSegment) {
+            cursor = position(firstSegment, 0);
+        }
+        startPosition = cursor;
+        readSegment = segment(cursor);
+        readBuffer = map(readSegment);
+        readBuffer.position(offset(cursor));
+
+        int segment = readSegment;
+        ByteBuffer scan = readBuffer.duplicate();
+        long pending = 0;
+        while (true) {
+            int length = scan.remaining() < 4 ? NEXT_SEGMENT : scan.getInt(scan.position());
+            if (length == 0) {
+                break;
+            }
+            if (length != NEXT_SEGMENT) {
+                scan.position(scan.position() + 4 + length);
+                pending++;
+            } else if (segment < lastSegment) {
+                segment++;
+                scan = map(segment);
+            } else {
+                segment++;
+                scan = map(segment);
+                break;
+            }
+        }
+
+        writeSegment = segment;
+        writeBuffer = map(segment);
+        writeBuffer.position(scan.position());
+        written.set(pending);
+        if (pending > 0) {
+            logger.info("resume frontier {}, {} pending urls", directory, pending);
+        }
+    }
+
+    private MappedByteBuffer map(int segment) {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(segment), "rw")) {
+            if (file.length() < segmentSize) {
+                file.setLength(segmentSize);
+            }
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long readCursor() {
+        File file = new File(directory, "cursor");
+        if (!file.exists()) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readLong();
+        } catch (IOException e) {
+            logger.warn("failed to read frontier cursor {}, start from first segment", file, e);
+            return -1;
+        }
+    }
+
+    private void saveCursor(long position) {
+        File file = new File(directory, "cursor");
+        File temp = new File(directory, "cursor.tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeLong(position);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        for (; firstSegment < segment(position); firstSegment++) {
+            File segment = segmentFile(firstSegment);
+            if (segment.exists() && !segment.delete()) {
+                logger.warn("failed to delete consumed segment {}", segment);
+            }
+        }
+    }
+
+    private File segmentFile(int segment) {
+        return new File(directory, String.format("%08d.segment", segment));
+    }
+
+    private static long position(int segment, int offset) {
+        return (long) segment << 32 | offset;
+    }
+
+    private static int segment(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+
+    private static class Entry {
+        final String url;
+        final long position;
+
+        Entry(String url, long position) {
+            this.url = url;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package crawler.input;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.AbstractIterator;
+import crawler.Context;
+import crawler.Input;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Iterator;
+
+/**
+ * one url per line, read lazily, anything after a tab is ignored so the dead letter file of FailurePolicy can be crawled again.
+ *
+ * @author chi
+ */
+public class FileInput implements Input, Closeable {
+    private final File file;
+    private BufferedReader reader;
+
+    public FileInput(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public Iterator<Context> iterator() {
+        try {
+            close();
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        BufferedReader lines = reader;
+        return new AbstractIterator<Context>() {
+            @Override
+            protected Context computeNext() {
+                try {
+                    String line;
+                    while ((line = lines.readLine()) != null) {
+                        int tab = line.indexOf('\t');
+                        String url = (tab < 0 ? line : line.substring(0, tab)).trim();
+                        if (!url.isEmpty()) {
+                            return new Context(url);
+                        }
+                    }
+                    return endOfData();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void end(Context context) {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
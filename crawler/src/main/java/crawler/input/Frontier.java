@@ -0,0 +1,17 @@
+package crawler.input;
+
+/**
+ * pending urls of a SeedInput, add is called from every worker, poll only from the input thread.
+ *
+ * @author chi
+ */
+interface Frontier {
+    void add(String url);
+
+    /**
+     * @return next url or null if nothing is pending
+     */
+    String poll();
+
+    long size();
+}
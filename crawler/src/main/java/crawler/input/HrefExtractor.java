@@ -0,0 +1,327 @@
+package crawler.input;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * finds the href of a tags in raw html without building a document, bytes can be fed in any pieces.
+ * only tags are buffered, comments and the bodies of script and style are skipped, a base tag changes the base url.
+ * links are resolved like jsoup's abs:href. works for ascii compatible charsets, hrefs are decoded with charset.
+ *
+ * @author chi
+ */
+public class HrefExtractor {
+    private static final int MAX_TAG = 16 * 1024;
+    private static final int TEXT = 0;
+    private static final int TAG = 1;
+    private static final int SKIP_TAG = 2;
+    private static final int COMMENT = 3;
+    private static final int RAW_TEXT = 4;
+
+    private final String url;
+    private final Charset charset;
+    private final Consumer<String> links;
+    private URL base;
+    private boolean baseTag;
+    private int state = TEXT;
+    private byte[] tag = new byte[256];
+    private int tagLength;
+    private byte quote;
+    private byte last;
+    private int dashes;
+    private String rawEnd;
+    private int rawMatched;
+
+    public HrefExtractor(String url, Charset charset, Consumer<String> links) {
+        this.url = url;
+        this.charset = charset == null ? Charsets.UTF_8 : charset;
+        this.links = links;
+    }
+
+    public static void extract(byte[] html, String url, Charset charset, Consumer<String> links) {
+        new HrefExtractor(url, charset, links).feed(html, 0, html.length);
+    }
+
+    public static void extract(InputStream html, String url, Charset charset, Consumer<String> links) throws IOException {
+        HrefExtractor extractor = new HrefExtractor(url, charset, links);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = html.read(buffer)) >= 0) {
+            extractor.feed(buffer, 0, read);
+        }
+    }
+
+    public void feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            switch (state) {
+                case TEXT:
+                    if (b == '<') {
+                        startTag();
+                    }
+                    break;
+                case TAG:
+                    tag(b);
+                    break;
+                case SKIP_TAG:
+                    if (b == '>') {
+                        state = TEXT;
+                    }
+                    break;
+                case COMMENT:
+                    if (b == '>' && dashes >= 2) {
+                        state = TEXT;
+                    }
+                    dashes = b == '-' ? dashes + 1 : 0;
+                    break;
+                default:
+                    rawText(b);
+            }
+        }
+    }
+
+    private void startTag() {
+        state = TAG;
+        tagLength = 0;
+        quote = 0;
+        last = 0;
+    }
+
+    private void tag(byte b) {
+        if (tagLength == 0 && !isLetter(b) && b != '/' && b != '!' && b != '?') {
+            // a < in text
+            if (b != '<') {
+                state = TEXT;
+            }
+            return;
+        }
+        if (quote != 0) {
+            if (b == quote) {
+                quote = 0;
+            }
+        } else if (b == '>') {
+            state = TEXT;
+            endTag();
+            return;
+        } else if ((b == '"' || b == '\'') && last == '=') {
+            quote = b;
+        }
+        if (!isSpace(b)) {
+            last = b;
+        }
+
+        if (tagLength == tag.length) {
+            if (tagLength >= MAX_TAG) {
+                state = SKIP_TAG;
+                return;
+            }
+            tag = Arrays.copyOf(tag, tagLength * 2);
+        }
+        tag[tagLength++] = b;
+        if (tagLength == 3 && tag[0] == '!' && tag[1] == '-' && tag[2] == '-') {
+            state = COMMENT;
+            dashes = 0;
+        }
+    }
+
+    private void rawText(byte b) {
+        int expected = rawEnd.charAt(rawMatched);
+        if (Character.toLowerCase((char) (b & 0xFF)) == expected) {
+            rawMatched++;
+            if (rawMatched == rawEnd.length()) {
+                // continue with the end tag, so > inside its attributes is handled
+                startTag();
+                for (int i = 1; i < rawEnd.length(); i++) {
+                    tag[tagLength++] = (byte) rawEnd.charAt(i);
+                }
+            }
+        } else {
+            rawMatched = b == '<' ? 1 : 0;
+        }
+    }
+
+    private void endTag() {
+        int nameEnd = 0;
+        while (nameEnd < tagLength && !isSpace(tag[nameEnd]) && tag[nameEnd] != '/') {
+            nameEnd++;
+        }
+        if (is("a", nameEnd)) {
+            String href = href(nameEnd);
+            if (href != null) {
+                String link = resolve(href);
+                if (link != null) {
+                    links.accept(link);
+                }
+            }
+        } else if (is("base", nameEnd)) {
+            String href = href(nameEnd);
+            if (href != null && !baseTag) {
+                String resolved = resolve(href);
+                baseTag = true;
+                try {
+                    base = resolved == null ? null : new URL(resolved);
+                } catch (MalformedURLException e) {
+                    base = null;
+                }
+            }
+        } else if (is("script", nameEnd) || is("style", nameEnd)) {
+            state = RAW_TEXT;
+            rawEnd = "</" + new String(tag, 0, nameEnd, Charsets.US_ASCII).toLowerCase();
+            rawMatched = 0;
+        }
+    }
+
+    private String href(int from) {
+        int i = from;
+        while (i < tagLength) {
+            while (i < tagLength && (isSpace(tag[i]) || tag[i] == '/')) {
+                i++;
+            }
+            int nameStart = i;
+            while (i < tagLength && !isSpace(tag[i]) && tag[i] != '=' && tag[i] != '/') {
+                i++;
+            }
+            int nameEnd = i;
+            while (i < tagLength && isSpace(tag[i])) {
+                i++;
+            }
+            if (i >= tagLength || tag[i] != '=') {
+                continue;
+            }
+            i++;
+            while (i < tagLength && isSpace(tag[i])) {
+                i++;
+            }
+            int valueStart;
+            int valueEnd;
+            if (i < tagLength && (tag[i] == '"' || tag[i] == '\'')) {
+                byte q = tag[i];
+                valueStart = ++i;
+                while (i < tagLength && tag[i] != q) {
+                    i++;
+                }
+                valueEnd = i++;
+            } else {
+                valueStart = i;
+                while (i < tagLength && !isSpace(tag[i])) {
+                    i++;
+                }
+                valueEnd = i;
+            }
+            if (nameEnd - nameStart == 4 && isIgnoreCase(nameStart, "href")) {
+                return unescape(new String(tag, valueStart, valueEnd - valueStart, charset).trim());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * same as jsoup's Node.absUrl.
+     */
+    private String resolve(String href) {
+        try {
+            URL base = base();
+            if (base == null) {
+                return new URL(href).toExternalForm();
+            }
+            if (href.startsWith("?")) {
+                href = base.getPath() + href;
+            }
+            return new URL(base, href).toExternalForm();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private URL base() {
+        if (base == null && !baseTag) {
+            try {
+                base = new URL(url);
+            } catch (MalformedURLException e) {
+                baseTag = true;
+            }
+        }
+        return base;
+    }
+
+    /**
+     * decodes the character references common in urls, others are left as they are.
+     */
+    static String unescape(String value) {
+        int amp = value.indexOf('&');
+        if (amp < 0) {
+            return value;
+        }
+        StringBuilder b = new StringBuilder(value.length());
+        b.append(value, 0, amp);
+        int i = amp;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            int semicolon = c == '&' ? value.indexOf(';', i) : -1;
+            String decoded = semicolon > i && semicolon - i <= 10 ? reference(value.substring(i + 1, semicolon)) : null;
+            if (decoded == null) {
+                b.append(c);
+                i++;
+            } else {
+                b.append(decoded);
+                i = semicolon + 1;
+            }
+        }
+        return b.toString();
+    }
+
+    private static String reference(String name) {
+        switch (name) {
+            case "amp":
+                return "&";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            default:
+        }
+        if (name.length() < 2 || name.charAt(0) != '#') {
+            return null;
+        }
+        try {
+            boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+            int code = Integer.parseInt(name.substring(hex ? 2 : 1), hex ? 16 : 10);
+            return Character.isValidCodePoint(code) ? new String(Character.toChars(code)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean is(String name, int length) {
+        return length == name.length() && isIgnoreCase(0, name);
+    }
+
+    private boolean isIgnoreCase(int from, String lowerCase) {
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase((char) (tag[from + i] & 0xFF)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(byte b) {
+        return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z';
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+}
@@ -0,0 +1,61 @@
+package crawler.input;
+
+import crawler.Context;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * contexts of the ids in [index, end), split in halves so producer threads each take a part.
+ *
+ * @author chi
+ */
+class IndexSpliterator implements Spliterator<Context> {
+    private final IntFunction<Context> context;
+    private final int end;
+    private int index;
+
+    IndexSpliterator(IntFunction<Context> context, int index, int end) {
+        this.context = context;
+        this.index = index;
+        this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Context> action) {
+        if (index >= end) {
+            return false;
+        }
+        action.accept(context.apply(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Context> action) {
+        while (index < end) {
+            action.accept(context.apply(index++));
+        }
+    }
+
+    @Override
+    public Spliterator<Context> trySplit() {
+        int mid = (int) (((long) index + end) >>> 1);
+        if (mid <= index) {
+            return null;
+        }
+        IndexSpliterator prefix = new IndexSpliterator(context, index, mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Math.max(0, (long) end - index);
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+}
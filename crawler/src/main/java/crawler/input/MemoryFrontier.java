@@ -0,0 +1,115 @@
+package crawler.input;
+
+import com.google.common.base.Charsets;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * pending urls front coded in byte chunks instead of one String each. an url is stored as the length of the
+ * prefix it shares with the url before it, then the rest in utf-8, lengths as varints. links of a page are added
+ * one after the other and share scheme, host and most of the path, so an url takes a few bytes beyond its tail.
+ * every chunk starts with a full url, a chunk is dropped once it is read.
+ *
+ * @author chi
+ */
+class MemoryFrontier implements Frontier {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Deque<Chunk> chunks = new ArrayDeque<>();
+    private final AtomicLong size = new AtomicLong();
+    private byte[] lastWritten = new byte[0];
+    private byte[] lastRead = new byte[256];
+    private int readPosition;
+
+    @Override
+    public void add(String url) {
+        byte[] bytes = url.getBytes(Charsets.UTF_8);
+        synchronized (chunks) {
+            Chunk chunk = chunks.peekLast();
+            int shared = chunk == null || chunk.length == 0 ? 0 : sharedPrefix(lastWritten, bytes);
+            if (chunk == null || chunk.length + 10 + bytes.length - shared > chunk.data.length) {
+                // a new chunk starts with the full url
+                chunk = new Chunk(Math.max(CHUNK_SIZE, 10 + bytes.length));
+                chunks.addLast(chunk);
+                shared = 0;
+            }
+            chunk.writeVarint(shared);
+            chunk.writeVarint(bytes.length - shared);
+            System.arraycopy(bytes, shared, chunk.data, chunk.length, bytes.length - shared);
+            chunk.length += bytes.length - shared;
+            lastWritten = bytes;
+        }
+        size.incrementAndGet();
+    }
+
+    @Override
+    public String poll() {
+        synchronized (chunks) {
+            Chunk chunk = chunks.peekFirst();
+            if (chunk != null && readPosition == chunk.length && chunks.size() > 1) {
+                chunks.removeFirst();
+                chunk = chunks.peekFirst();
+                readPosition = 0;
+            }
+            if (chunk == null || readPosition == chunk.length) {
+                return null;
+            }
+
+            int shared = readVarint(chunk);
+            int rest = readVarint(chunk);
+            if (lastRead.length < shared + rest) {
+                lastRead = Arrays.copyOf(lastRead, Math.max(lastRead.length * 2, shared + rest));
+            }
+            System.arraycopy(chunk.data, readPosition, lastRead, shared, rest);
+            readPosition += rest;
+            size.decrementAndGet();
+            return new String(lastRead, 0, shared + rest, Charsets.UTF_8);
+        }
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    private int readVarint(Chunk chunk) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = chunk.data[readPosition++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int sharedPrefix(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < length && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class Chunk {
+        final byte[] data;
+        int length;
+
+        Chunk(int size) {
+            this.data = new byte[size];
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+}
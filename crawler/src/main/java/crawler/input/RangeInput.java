@@ -2,19 +2,24 @@ package crawler.input;
 
 import crawler.Context;
 import crawler.Input;
-import org.slf4j.helpers.MessageFormatter;
-
 import java.util.Iterator;
+import java.util.Spliterator;
 
 /**
+ * urls of the ids in [start, end), the spliterator splits the range so Crawler.producers() threads share it.
+ *
  * @author chi
  */
 public class RangeInput implements Input {
-    private final String urlTemplate;
+    private final UrlTemplate urlTemplate;
     private final int start;
     private final int end;
 
     public RangeInput(String urlTemplate, int start, int end) {
+        this(UrlTemplate.compile(urlTemplate), start, end);
+    }
+
+    public RangeInput(UrlTemplate urlTemplate, int start, int end) {
         this.urlTemplate = urlTemplate;
         this.start = start;
         this.end = end;
@@ -32,13 +37,16 @@ public class RangeInput implements Input {
 
             @Override
             public Context next() {
-                String url = MessageFormatter.arrayFormat(urlTemplate, new Object[]{index}).getMessage();
-                index++;
-                return new Context(url);
+                return new Context(urlTemplate.render(index++));
             }
         };
     }
 
+    @Override
+    public Spliterator<Context> spliterator() {
+        return new IndexSpliterator(index -> new Context(urlTemplate.render(index)), start, end);
+    }
+
     @Override
     public void end(Context context) {
     }
@@ -1,25 +1,29 @@
 package crawler.input;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
 import crawler.Context;
 import crawler.Input;
+import crawler.Key;
+import crawler.cluster.ClusterNode;
+import crawler.command.Body;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
@@ -27,28 +31,35 @@ import java.util.regex.Pattern;
 /**
  * @author chi
  */
-public class SeedInput implements Input {
+public class SeedInput implements Input, Closeable {
+    private static final Set<Key<?>> DOCUMENT = ImmutableSet.of(Key.of(Document.class));
+
     final Logger logger = LoggerFactory.getLogger(SeedInput.class);
 
-    private final Queue<Context> queue = new ConcurrentLinkedQueue<>();
+    private Frontier frontier = new MemoryFrontier();
     private final List<Pattern> urlPatterns = Lists.newArrayList();
     private final int waitSeconds = 5;
-    private BloomFilter<CharSequence> filter;
+    private final ConcurrentBloomFilter filter;
     private AtomicInteger count = new AtomicInteger();
     private static final int resetCount = 1000;
-    private final File backupFile;
+    private final Checkpoint checkpoint;
+    private ClusterNode cluster;
+    private UrlNormalizer normalizer = new UrlNormalizer();
 
     public SeedInput(File backupFile, String... urls) {
         for (String url : urls) {
-            queue.add(new Context(url));
+            frontier.add(seed(url));
         }
-        this.backupFile = backupFile;
-        try {
-            filter = backupFile.exists() ? BloomFilter.readFrom(new FileInputStream(backupFile), Funnels.stringFunnel(Charset.defaultCharset())) :
-                    BloomFilter.create(Funnels.stringFunnel(Charset.defaultCharset()), 10000 * 1000);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        if (backupFile.exists()) {
+            try (FileInputStream in = new FileInputStream(backupFile)) {
+                filter = ConcurrentBloomFilter.readFrom(new BufferedInputStream(in), Charset.defaultCharset());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            filter = ConcurrentBloomFilter.create(10000 * 1000, Charset.defaultCharset());
         }
+        checkpoint = new Checkpoint(filter, backupFile);
     }
 
     public SeedInput includes(String... urlPatterns) {
@@ -62,6 +73,95 @@ public class SeedInput implements Input {
         return this;
     }
 
+    /**
+     * rules applied to every link before it is checked against the include patterns and the bloom filter,
+     * by default only scheme, host, port, fragment and empty parameters are normalized.
+     */
+    public SeedInput normalizer(UrlNormalizer normalizer) {
+        this.normalizer = normalizer;
+        List<String> pending = Lists.newArrayList();
+        String url;
+        while ((url = frontier.poll()) != null) {
+            pending.add(url);
+        }
+        for (String u : pending) {
+            frontier.add(seed(u));
+        }
+        return this;
+    }
+
+    /**
+     * seeds are normalized like links, so a link to the normal form of a seed is not crawled again.
+     * a seed the normalizer rejects is crawled as it is.
+     */
+    private String seed(String url) {
+        String normalized = normalizer.normalize(url);
+        return normalized == null ? url : normalized;
+    }
+
+    /**
+     * keeps pending urls in a segment log under directory instead of heap, a crawl restarted with the same
+     * directory continues with the urls left there and ignores the seed urls.
+     */
+    public SeedInput frontier(File directory) {
+        DiskFrontier disk = new DiskFrontier(directory);
+        if (disk.size() == 0) {
+            String url;
+            while ((url = frontier.poll()) != null) {
+                disk.add(url);
+            }
+        }
+        frontier = disk;
+        return this;
+    }
+
+    /**
+     * crawls only the urls owned by node, links to hosts of other nodes are forwarded to them and the bloom filter
+     * holds just the urls of this node. pending urls of other nodes, like the seeds, are forwarded right away.
+     */
+    public SeedInput cluster(ClusterNode node) {
+        Preconditions.checkState(cluster == null, "already in a cluster");
+        List<String> pending = Lists.newArrayList();
+        String url;
+        while ((url = frontier.poll()) != null) {
+            pending.add(url);
+        }
+        cluster = node;
+        for (String u : pending) {
+            if (node.owns(u)) {
+                crawled(u);
+                frontier.add(u);
+            } else {
+                node.forward(u);
+            }
+        }
+        node.start(this::add);
+        return this;
+    }
+
+    /**
+     * adds a url found outside of the crawled pages, like the links forwarded by other nodes.
+     * in a cluster urls of other nodes are forwarded to their owner.
+     *
+     * @return true if the url is new and crawled by this input
+     */
+    public boolean add(String url) {
+        String normalized = normalizer.normalize(url);
+        return normalized != null && offer(normalized);
+    }
+
+    private boolean offer(String url) {
+        if (cluster != null && !cluster.owns(url)) {
+            cluster.forward(url);
+            return false;
+        }
+        if (notCrawled(url) && crawled(url)) {
+            frontier.add(url);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public Iterator<Context> iterator() {
         return new Iterator<Context>() {
@@ -69,17 +169,18 @@ public class SeedInput implements Input {
 
             @Override
             public boolean hasNext() {
-                context = queue.poll();
+                String url = frontier.poll();
 
-                if (context == null) {
+                if (url == null) {
                     try {
                         TimeUnit.SECONDS.sleep(waitSeconds);
                     } catch (InterruptedException e) {
                         throw new RuntimeException(e);
                     }
-                    context = queue.poll();
+                    url = frontier.poll();
                 }
 
+                context = url == null ? null : new Context(url);
                 return context != null;
             }
 
@@ -113,29 +214,75 @@ public class SeedInput implements Input {
         return !filter.mightContain(url);
     }
 
-    void crawled(String url) {
-        filter.put(url);
-        if (count.incrementAndGet() == resetCount) {
-            count.set(0);
+    /**
+     * @return true if the url was not crawled before, only one of concurrent callers with the same url gets true
+     */
+    boolean crawled(String url) {
+        if (!filter.put(url)) {
+            return false;
+        }
+        if (count.incrementAndGet() % resetCount == 0) {
+            checkpoint.request();
+        }
+        return true;
+    }
+
+    /**
+     * takes the links of a parsed document, or scans the raw body when no pipe built one.
+     */
+    @Override
+    public void end(Context context) {
+        Document document = context.get(Document.class);
+        if (document != null) {
+            for (Element element : document.select("a")) {
+                link(element.attr("abs:href"));
+            }
+            return;
+        }
+        Body body = context.get(Body.class);
+        Charset charset = body == null || body.charset() == null ? Charsets.UTF_8 : body.charset();
+        byte[] bytes = context.get(byte[].class);
+        if (bytes != null) {
+            HrefExtractor.extract(bytes, context.url(), charset, this::link);
+        } else if (body != null && body.readable()) {
             try {
-                filter.writeTo(new FileOutputStream(backupFile));
+                HrefExtractor.extract(body.stream(), context.url(), charset, this::link);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
+    }
 
+    private void link(String href) {
+        String url = normalizer.normalize(href);
+        if (isInclude(url)) {
+            offer(url);
+        }
     }
 
+    /**
+     * links are taken from the document if there is one, so it is kept until end. the raw body is not
+     * consumed by pipes without ToDocument.
+     */
     @Override
-    public void end(Context context) {
-        Document document = context.get(Document.class);
-        if (document != null) {
-            for (Element element : document.select("a")) {
-                String url = element.attr("abs:href");
-                if (isInclude(url) && notCrawled(url)) {
-                    queue.add(new Context(url));
-                    crawled(url);
-                }
+    public Set<Key<?>> uses() {
+        return DOCUMENT;
+    }
+
+    public long pending() {
+        return frontier.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (cluster != null) {
+                cluster.close();
+            }
+            checkpoint.close();
+        } finally {
+            if (frontier instanceof Closeable) {
+                ((Closeable) frontier).close();
             }
         }
     }
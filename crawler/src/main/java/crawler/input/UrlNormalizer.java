@@ -0,0 +1,211 @@
+package crawler.input;
+
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * rewrites urls which point to the same page into one form before they are checked against the bloom filter:
+ * lower case scheme and host, no default port, no fragment, "/" for an empty path and no empty query parameters.
+ * parameters can be stripped by name and sorted by key. urls already in normal form are returned as they are,
+ * only urls which change are copied.
+ *
+ * @author chi
+ */
+public class UrlNormalizer {
+    public static final List<String> TRACKING_PARAMETERS = Arrays.asList("utm_*", "gclid", "fbclid", "msclkid",
+        "yclid", "mc_cid", "mc_eid", "_hsenc", "_hsmi");
+
+    private final List<String> names = Lists.newArrayList();
+    private final List<String> prefixes = Lists.newArrayList();
+    private boolean sortQuery;
+
+    /**
+     * drops query parameters with one of the names, a name ending with * drops every parameter starting with it.
+     */
+    public UrlNormalizer stripParameters(String... names) {
+        for (String name : names) {
+            if (name.endsWith("*")) {
+                prefixes.add(name.substring(0, name.length() - 1));
+            } else {
+                this.names.add(name);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * drops utm_* and the click ids of ad and mail networks, see TRACKING_PARAMETERS.
+     */
+    public UrlNormalizer stripTracking() {
+        return stripParameters(TRACKING_PARAMETERS.toArray(new String[TRACKING_PARAMETERS.size()]));
+    }
+
+    /**
+     * orders query parameters by key, parameters with the same key keep their order.
+     */
+    public UrlNormalizer sortQuery() {
+        this.sortQuery = true;
+        return this;
+    }
+
+    /**
+     * @return the url in normal form, null if it is not an http or https url
+     */
+    public String normalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        int schemeEnd = url.indexOf("://");
+        boolean https;
+        if (schemeEnd == 4 && url.regionMatches(true, 0, "http", 0, 4)) {
+            https = false;
+        } else if (schemeEnd == 5 && url.regionMatches(true, 0, "https", 0, 5)) {
+            https = true;
+        } else {
+            return null;
+        }
+
+        int hostStart = schemeEnd + 3;
+        int authorityEnd = indexOf(url, hostStart, url.length(), "/?#");
+        int pathEnd = indexOf(url, authorityEnd, url.length(), "?#");
+        int queryEnd = indexOf(url, pathEnd, url.length(), "#");
+        hostStart = Math.max(hostStart, url.lastIndexOf('@', authorityEnd - 1) + 1);
+        int hostEnd = hostEnd(url, hostStart, authorityEnd, https);
+
+        boolean changed = hasUpperCase(url, 0, schemeEnd) || hasUpperCase(url, hostStart, hostEnd)
+            || hostEnd != authorityEnd || pathEnd == authorityEnd || queryEnd != url.length();
+
+        int[] params = null;
+        int count = 0;
+        if (pathEnd < queryEnd) {
+            params = new int[8];
+            int start = pathEnd + 1;
+            while (start <= queryEnd) {
+                int end = indexOf(url, start, queryEnd, "&");
+                if (end == start || isStripped(url, start, end)) {
+                    changed = true;
+                } else {
+                    if (count * 2 == params.length) {
+                        params = Arrays.copyOf(params, params.length * 2);
+                    }
+                    params[count * 2] = start;
+                    params[count * 2 + 1] = end;
+                    count++;
+                }
+                start = end + 1;
+            }
+            if (sortQuery) {
+                changed |= sort(url, params, count);
+            }
+        }
+        if (!changed) {
+            return url;
+        }
+
+        StringBuilder b = new StringBuilder(url.length());
+        b.append(https ? "https://" : "http://");
+        b.append(url, schemeEnd + 3, hostStart);
+        for (int i = hostStart; i < hostEnd; i++) {
+            char c = url.charAt(i);
+            b.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        if (pathEnd == authorityEnd) {
+            b.append('/');
+        } else {
+            b.append(url, authorityEnd, pathEnd);
+        }
+        for (int i = 0; i < count; i++) {
+            b.append(i == 0 ? '?' : '&').append(url, params[i * 2], params[i * 2 + 1]);
+        }
+        return b.toString();
+    }
+
+    /**
+     * @return end of the host, before the port when it is the default one of the scheme or empty
+     */
+    private static int hostEnd(String url, int hostStart, int authorityEnd, boolean https) {
+        int colon = url.lastIndexOf(':', authorityEnd - 1);
+        if (colon < hostStart || url.lastIndexOf(']', authorityEnd - 1) > colon) {
+            return authorityEnd;
+        }
+        String port = https ? "443" : "80";
+        if (colon + 1 == authorityEnd
+            || authorityEnd - colon - 1 == port.length() && url.startsWith(port, colon + 1)) {
+            return colon;
+        }
+        return authorityEnd;
+    }
+
+    private boolean isStripped(String url, int start, int end) {
+        int nameEnd = indexOf(url, start, end, "=");
+        int length = nameEnd - start;
+        for (String name : names) {
+            if (name.length() == length && url.startsWith(name, start)) {
+                return true;
+            }
+        }
+        for (String prefix : prefixes) {
+            if (prefix.length() <= length && url.startsWith(prefix, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * insertion sort of the parameter ranges by key, queries are short.
+     *
+     * @return true if the order changed
+     */
+    private static boolean sort(String url, int[] params, int count) {
+        boolean changed = false;
+        for (int i = 1; i < count; i++) {
+            int start = params[i * 2];
+            int end = params[i * 2 + 1];
+            int j = i - 1;
+            while (j >= 0 && compareKeys(url, params[j * 2], params[j * 2 + 1], start, end) > 0) {
+                params[(j + 1) * 2] = params[j * 2];
+                params[(j + 1) * 2 + 1] = params[j * 2 + 1];
+                j--;
+                changed = true;
+            }
+            params[(j + 1) * 2] = start;
+            params[(j + 1) * 2 + 1] = end;
+        }
+        return changed;
+    }
+
+    private static int compareKeys(String url, int start1, int end1, int start2, int end2) {
+        int keyEnd1 = indexOf(url, start1, end1, "=");
+        int keyEnd2 = indexOf(url, start2, end2, "=");
+        int length = Math.min(keyEnd1 - start1, keyEnd2 - start2);
+        for (int i = 0; i < length; i++) {
+            int diff = url.charAt(start1 + i) - url.charAt(start2 + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (keyEnd1 - start1) - (keyEnd2 - start2);
+    }
+
+    private static int indexOf(String url, int start, int end, String chars) {
+        for (int i = start; i < end; i++) {
+            if (chars.indexOf(url.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static boolean hasUpperCase(String url, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
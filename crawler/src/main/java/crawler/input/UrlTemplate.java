@@ -0,0 +1,43 @@
+package crawler.input;
+
+/**
+ * url pattern with one {} placeholder, parsed once so rendering an id is a single string build without boxing.
+ * escapes follow slf4j's MessageFormatter, \{} is a literal {} and \\{} a backslash followed by the id.
+ *
+ * @author chi
+ */
+public class UrlTemplate {
+    private final String prefix;
+    private final String suffix;
+
+    UrlTemplate(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    public static UrlTemplate compile(String template) {
+        StringBuilder prefix = new StringBuilder();
+        int i = 0;
+        while (true) {
+            int j = template.indexOf("{}", i);
+            if (j < 0) {
+                return new UrlTemplate(prefix.append(template, i, template.length()).toString(), null);
+            }
+            boolean escaped = j > 0 && template.charAt(j - 1) == '\\';
+            if (escaped && !(j > 1 && template.charAt(j - 2) == '\\')) {
+                prefix.append(template, i, j - 1).append('{');
+                i = j + 1;
+            } else {
+                prefix.append(template, i, escaped ? j - 1 : j);
+                return new UrlTemplate(prefix.toString(), template.substring(j + 2));
+            }
+        }
+    }
+
+    public String render(int id) {
+        if (suffix == null) {
+            return prefix;
+        }
+        return new StringBuilder(prefix.length() + 11 + suffix.length()).append(prefix).append(id).append(suffix).toString();
+    }
+}
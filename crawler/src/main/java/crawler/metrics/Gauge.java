@@ -0,0 +1,11 @@
+package crawler.metrics;
+
+/**
+ * value read when metrics are reported, like the size of a queue.
+ *
+ * @author chi
+ */
+@FunctionalInterface
+public interface Gauge {
+    long value();
+}
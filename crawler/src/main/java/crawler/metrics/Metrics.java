@@ -0,0 +1,79 @@
+package crawler.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * named timers, counters and gauges of a crawler. timers record nanos, every metric is created on first use.
+ *
+ * @author chi
+ */
+public class Metrics {
+    private final Map<String, Histogram> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+
+    public Histogram timer(String name) {
+        Histogram timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter : counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * registers the gauge, replacing the one which had the same name.
+     */
+    public void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public Map<String, Histogram> timers() {
+        return Collections.unmodifiableMap(timers);
+    }
+
+    public Map<String, LongAdder> counters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    public Map<String, Gauge> gauges() {
+        return Collections.unmodifiableMap(gauges);
+    }
+
+    /**
+     * exposes the metrics as attributes of the mbean crawler:type=Metrics,name=name on the platform mbean server.
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("crawler", "type", "Metrics");
+            objectName = new ObjectName(objectName + ",name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new MetricsMBean(this), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void unregister(ObjectName objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
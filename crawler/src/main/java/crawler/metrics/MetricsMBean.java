@@ -0,0 +1,122 @@
+package crawler.metrics;
+
+import com.google.common.collect.Lists;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanConstructorInfo;
+import javax.management.ReflectionException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * read only view of the metrics, counters and gauges are long attributes named after them,
+ * every timer has name.count, name.mean, name.p50, name.p99 and name.max attributes in milliseconds.
+ *
+ * @author chi
+ */
+class MetricsMBean implements DynamicMBean {
+    private static final String[] TIMER_ATTRIBUTES = {"count", "mean", "p50", "p99", "max"};
+
+    private final Metrics metrics;
+
+    MetricsMBean(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        LongAdder counter = metrics.counters().get(attribute);
+        if (counter != null) {
+            return counter.sum();
+        }
+        Gauge gauge = metrics.gauges().get(attribute);
+        if (gauge != null) {
+            return gauge.value();
+        }
+
+        int dot = attribute.lastIndexOf('.');
+        Histogram timer = dot > 0 ? metrics.timers().get(attribute.substring(0, dot)) : null;
+        if (timer == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        Histogram.Snapshot snapshot = timer.snapshot();
+        switch (attribute.substring(dot + 1)) {
+            case "count":
+                return snapshot.count();
+            case "mean":
+                return millis(snapshot.mean());
+            case "p50":
+                return millis(snapshot.percentile(50));
+            case "p99":
+                return millis(snapshot.percentile(99));
+            case "max":
+                return millis(snapshot.max());
+            default:
+                throw new AttributeNotFoundException(attribute);
+        }
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // left out of the list as the contract of getAttributes says
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("metrics are read only, " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName), "metrics have no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = Lists.newArrayList();
+        for (String name : metrics.counters().keySet()) {
+            attributes.add(attribute(name, Long.class, "counter"));
+        }
+        for (String name : metrics.gauges().keySet()) {
+            attributes.add(attribute(name, Long.class, "gauge"));
+        }
+        for (Map.Entry<String, Histogram> entry : metrics.timers().entrySet()) {
+            for (String attribute : TIMER_ATTRIBUTES) {
+                Class<?> type = "count".equals(attribute) ? Long.class : Double.class;
+                attributes.add(attribute(entry.getKey() + "." + attribute, type, "timer " + attribute));
+            }
+        }
+        return new MBeanInfo(Metrics.class.getName(), "crawler metrics", attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+            new MBeanConstructorInfo[0], new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+    }
+
+    private MBeanAttributeInfo attribute(String name, Class<?> type, String description) {
+        return new MBeanAttributeInfo(name, type.getName(), description, true, false, false);
+    }
+
+    private double millis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
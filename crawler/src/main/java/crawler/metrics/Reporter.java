@@ -0,0 +1,85 @@
+package crawler.metrics;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * logs one line of metrics every period, counters with their rate over the period, gauges,
+ * then count, p50, p99 and max of every timer in milliseconds.
+ *
+ * @author chi
+ */
+public class Reporter implements Closeable {
+    private final Logger logger = LoggerFactory.getLogger(Reporter.class);
+    private final Metrics metrics;
+    private final ScheduledExecutorService executor;
+    private final Map<String, Long> previous = Maps.newHashMap();
+    private long lastReport = System.nanoTime();
+
+    public Reporter(Metrics metrics, long period, TimeUnit unit) {
+        this.metrics = metrics;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawler-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::report, period, period, unit);
+    }
+
+    public synchronized String summary() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastReport) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastReport = now;
+
+        StringBuilder b = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : metrics.counters().entrySet()) {
+            long value = entry.getValue().sum();
+            Long last = previous.put(entry.getKey(), value);
+            separate(b, ", ").append(entry.getKey()).append(' ').append(value)
+                .append(String.format(" (%.1f/s)", (value - (last == null ? 0 : last)) / seconds));
+        }
+        String separator = " | ";
+        for (Map.Entry<String, Gauge> entry : metrics.gauges().entrySet()) {
+            separate(b, separator).append(entry.getKey()).append(' ').append(entry.getValue().value());
+            separator = ", ";
+        }
+        separator = " | ";
+        for (Map.Entry<String, Histogram> entry : metrics.timers().entrySet()) {
+            Histogram.Snapshot snapshot = entry.getValue().snapshot();
+            separate(b, separator).append(entry.getKey())
+                .append(String.format(" n=%d p50=%.1fms p99=%.1fms max=%.1fms", snapshot.count(),
+                    millis(snapshot.percentile(50)), millis(snapshot.percentile(99)), millis(snapshot.max())));
+            separator = ", ";
+        }
+        return b.toString();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void report() {
+        try {
+            logger.info("metrics {}", summary());
+        } catch (RuntimeException e) {
+            logger.warn("failed to report metrics", e);
+        }
+    }
+
+    private StringBuilder separate(StringBuilder b, String separator) {
+        return b.length() == 0 ? b : b.append(separator);
+    }
+
+    private double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,318 @@
+package crawler.scheduler;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import crawler.Context;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * buckets urls by host and hands them out only when the host has a free connection and a rate permit,
+ * hosts waiting for a permit are ordered by the time the permit becomes available. an idle host is kept until its
+ * bucket is full again, offer and take drop the ones which are.
+ *
+ * @author chi
+ */
+public class HostScheduler {
+    private final double requestsPerSecond;
+    private final int connectionsPerHost;
+    private final int capacity;
+    private final Map<String, Host> hosts = Maps.newHashMap();
+    private final Queue<Host> ready = new PriorityQueue<>(Comparator.comparingLong((Host host) -> host.readyAt));
+    private final Queue<Host> idle = new PriorityQueue<>(Comparator.comparingLong((Host host) -> host.idleUntil));
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition changed = lock.newCondition();
+    private int size;
+    private boolean closed;
+
+    public HostScheduler(double requestsPerSecond, int connectionsPerHost, int capacity) {
+        Preconditions.checkState(requestsPerSecond > 0, "requests per second must be larger than 0");
+        Preconditions.checkState(connectionsPerHost > 0, "connections per host must be larger than 0");
+        Preconditions.checkState(capacity > 0, "capacity must be larger than 0");
+        this.requestsPerSecond = requestsPerSecond;
+        this.connectionsPerHost = connectionsPerHost;
+        this.capacity = capacity;
+    }
+
+    public static String host(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == ':' || c == '?' || c == '#') {
+                break;
+            }
+            end++;
+        }
+        return url.substring(start, end).toLowerCase();
+    }
+
+    /**
+     * blocks while capacity urls are waiting.
+     */
+    public void offer(Context context) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size >= capacity) {
+                notFull.await();
+            }
+            long now = System.nanoTime();
+            evictIdle(now);
+            String name = host(context.url());
+            Host host = hosts.get(name);
+            if (host == null) {
+                host = new Host(name, new TokenBucket(requestsPerSecond, 1, now));
+                hosts.put(name, host);
+            }
+            host.pending.add(context);
+            size++;
+            schedule(host);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return next url of a ready host, null once closed and drained
+     */
+    public Context take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                Host host = ready.peek();
+                if (host == null) {
+                    if (closed && size == 0) {
+                        return null;
+                    }
+                    changed.await();
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                evictIdle(now);
+                if (host.readyAt > now) {
+                    changed.awaitNanos(host.readyAt - now);
+                    continue;
+                }
+
+                ready.poll();
+                host.queued = false;
+                if (host.active >= connectionsPerHost || host.bucket.delay(now) > 0) {
+                    // a retry took the connection or the permit since
+                    schedule(host);
+                    continue;
+                }
+                host.bucket.consume(now);
+                host.active++;
+                size--;
+                notFull.signal();
+                Context context = host.pending.poll();
+                schedule(host);
+                return context;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * takes a connection and a rate permit for a url which was not offered, like a retry, without waiting.
+     *
+     * @return false if the host has no free connection or permit now, release frees the connection otherwise
+     */
+    public boolean tryAcquire(Context context) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            evictIdle(now);
+            String name = host(context.url());
+            Host host = hosts.get(name);
+            if (host == null) {
+                host = new Host(name, new TokenBucket(requestsPerSecond, 1, now));
+                hosts.put(name, host);
+            }
+            if (host.active >= connectionsPerHost || host.bucket.delay(now) > 0) {
+                return false;
+            }
+            host.bucket.consume(now);
+            host.active++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * frees the connection taken by a url returned from take or by tryAcquire.
+     */
+    public void release(Context context) {
+        lock.lock();
+        try {
+            String name = host(context.url());
+            Host host = hosts.get(name);
+            if (host == null) {
+                return;
+            }
+            host.active--;
+            if (host.active == 0 && host.pending.isEmpty()) {
+                long now = System.nanoTime();
+                long delay = host.bucket.delay(now);
+                if (delay == 0) {
+                    hosts.remove(name);
+                } else {
+                    // keep the host while its bucket is not full, a new bucket would forget the last request
+                    host.idleUntil = now + delay;
+                    idle.add(host);
+                }
+            } else {
+                schedule(host);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * no more offers, take returns null after the remaining urls are handed out.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return hosts with waiting or active urls, or used too recently to be forgotten
+     */
+    public int hosts() {
+        lock.lock();
+        try {
+            return hosts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * feeds the input from a background thread and iterates the urls in the order hosts become ready.
+     */
+    public Iterable<Context> drain(Iterable<Context> input) {
+        return drain(Collections.singletonList(input));
+    }
+
+    /**
+     * feeds every part of an input from its own background thread, closed once all parts are done.
+     */
+    public Iterable<Context> drain(List<? extends Iterable<Context>> parts) {
+        AtomicInteger running = new AtomicInteger(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            Iterable<Context> part = parts.get(i);
+            Thread producer = new Thread(() -> {
+                try {
+                    for (Context context : part) {
+                        offer(context);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        close();
+                    }
+                }
+            }, parts.size() == 1 ? "crawler-scheduler-input" : "crawler-scheduler-input-" + i);
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        return () -> new Iterator<Context>() {
+            Context next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = take();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Context next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Context context = next;
+                next = null;
+                return context;
+            }
+        };
+    }
+
+    /**
+     * an entry is stale if its host was used again since, it is dropped here or by a later entry.
+     */
+    private void evictIdle(long now) {
+        while (!idle.isEmpty() && idle.peek().idleUntil <= now) {
+            Host host = idle.poll();
+            if (host.active == 0 && host.pending.isEmpty() && host.bucket.delay(now) == 0
+                && hosts.get(host.name) == host) {
+                hosts.remove(host.name);
+            }
+        }
+    }
+
+    private void schedule(Host host) {
+        if (host.queued || host.pending.isEmpty() || host.active >= connectionsPerHost) {
+            return;
+        }
+        long now = System.nanoTime();
+        host.readyAt = now + host.bucket.delay(now);
+        host.queued = true;
+        ready.add(host);
+        changed.signal();
+    }
+
+    private static class Host {
+        final String name;
+        final Queue<Context> pending = new ArrayDeque<>();
+        final TokenBucket bucket;
+        long readyAt;
+        long idleUntil;
+        int active;
+        boolean queued;
+
+        Host(String name, TokenBucket bucket) {
+            this.name = name;
+            this.bucket = bucket;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package crawler.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * not thread safe, HostScheduler guards every bucket with its own lock.
+ *
+ * @author chi
+ */
+class TokenBucket {
+    private final double nanosPerPermit;
+    private final double maxPermits;
+    private double permits;
+    private long refilledAt;
+
+    TokenBucket(double permitsPerSecond, double burst, long now) {
+        this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.maxPermits = burst;
+        this.permits = burst;
+        this.refilledAt = now;
+    }
+
+    /**
+     * @return nanoseconds until a permit is available, 0 if one is available now
+     */
+    long delay(long now) {
+        refill(now);
+        return permits >= 1 ? 0 : (long) Math.ceil((1 - permits) * nanosPerPermit);
+    }
+
+    void consume(long now) {
+        refill(now);
+        permits -= 1;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            permits = Math.min(maxPermits, permits + (now - refilledAt) / nanosPerPermit);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package crawler.sink;
+
+import com.google.common.base.Charsets;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * writes the given columns of every record as a row of a csv file, quoted as rfc 4180 says.
+ * the header row is written when the file is new, an existing file is appended to.
+ *
+ * @author chi
+ */
+public class CsvSink implements Sink {
+    private final File file;
+    private final String[] columns;
+    private final Writer writer;
+
+    public CsvSink(File file, String... columns) throws IOException {
+        this.file = file;
+        this.columns = columns;
+        boolean exists = file.exists() && file.length() > 0;
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), Charsets.UTF_8), 64 * 1024);
+        if (!exists) {
+            row(columns);
+        }
+    }
+
+    @Override
+    public void write(Map<String, Object> record) throws IOException {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            values[i] = record.get(columns[i]);
+        }
+        row(values);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+
+    private void row(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escape(values[i].toString()));
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,109 @@
+package crawler.sink;
+
+import com.google.common.base.Joiner;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * inserts the given columns of every record into table, a batch of records is one executeBatch and one commit.
+ * a failed batch is rolled back and the connection is opened again for the next one.
+ *
+ * @author chi
+ */
+public class JdbcSink implements Sink {
+    private final DataSource dataSource;
+    private final String table;
+    private final String[] columns;
+    private final String sql;
+    private Connection connection;
+    private PreparedStatement statement;
+
+    public JdbcSink(DataSource dataSource, String table, String... columns) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.columns = columns;
+        this.sql = "insert into " + table + " (" + Joiner.on(", ").join(columns) + ") values ("
+            + Joiner.on(", ").join(Collections.nCopies(columns.length, "?")) + ")";
+    }
+
+    @Override
+    public void write(Map<String, Object> record) throws IOException {
+        try {
+            if (statement == null) {
+                connection = dataSource.getConnection();
+                connection.setAutoCommit(false);
+                statement = connection.prepareStatement(sql);
+            }
+            for (int i = 0; i < columns.length; i++) {
+                statement.setObject(i + 1, record.get(columns[i]));
+            }
+            statement.addBatch();
+        } catch (SQLException e) {
+            throw fail(e);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            throw fail(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeConnection();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return table;
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    private IOException fail(SQLException e) {
+        try {
+            if (connection != null) {
+                connection.rollback();
+            }
+            closeConnection();
+        } catch (SQLException suppressed) {
+            e.addSuppressed(suppressed);
+        }
+        return new IOException(e);
+    }
+
+    private void closeConnection() throws SQLException {
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } finally {
+            statement = null;
+            if (connection != null) {
+                Connection c = connection;
+                connection = null;
+                c.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package crawler.sink;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+
+/**
+ * writes maps, collections, arrays, numbers, booleans and strings as json, anything else as its string.
+ * NaN and infinite numbers are written as null.
+ *
+ * @author chi
+ */
+final class Json {
+    private Json() {
+    }
+
+    static String toJson(Object value) {
+        StringBuilder b = new StringBuilder();
+        append(b, value);
+        return b.toString();
+    }
+
+    static void append(StringBuilder b, Object value) {
+        if (value == null) {
+            b.append("null");
+        } else if (value instanceof Double && !Double.isFinite((Double) value)
+            || value instanceof Float && !Float.isFinite((Float) value)) {
+            // json has no NaN or Infinity
+            b.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            b.append(value);
+        } else if (value instanceof Map) {
+            b.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    b.append(',');
+                }
+                first = false;
+                string(b, String.valueOf(entry.getKey()));
+                b.append(':');
+                append(b, entry.getValue());
+            }
+            b.append('}');
+        } else if (value instanceof Iterable) {
+            b.append('[');
+            boolean first = true;
+            for (Object item : (Iterable<?>) value) {
+                if (!first) {
+                    b.append(',');
+                }
+                first = false;
+                append(b, item);
+            }
+            b.append(']');
+        } else if (value.getClass().isArray()) {
+            b.append('[');
+            for (int i = 0; i < Array.getLength(value); i++) {
+                if (i > 0) {
+                    b.append(',');
+                }
+                append(b, Array.get(value, i));
+            }
+            b.append(']');
+        } else {
+            string(b, value.toString());
+        }
+    }
+
+    private static void string(StringBuilder b, String value) {
+        b.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    b.append("\\\"");
+                    break;
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        b.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        b.append(c);
+                    }
+            }
+        }
+        b.append('"');
+    }
+}
@@ -0,0 +1,90 @@
+package crawler.sink;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * one json object per line in files named prefix-yyyyMMdd-HHmmss-n.jsonl under directory,
+ * a new file is started once the current one reaches maxBytes or is older than maxMillis.
+ *
+ * @author chi
+ */
+public class JsonLinesSink implements Sink {
+    private final File directory;
+    private final String prefix;
+    private long maxBytes = Long.MAX_VALUE;
+    private long maxMillis = Long.MAX_VALUE;
+    private OutputStream out;
+    private File file;
+    private long bytes;
+    private long openedAt;
+    private int sequence;
+
+    public JsonLinesSink(File directory, String prefix) {
+        Preconditions.checkState(directory.isDirectory() || directory.mkdirs(), "failed to create %s", directory);
+        this.directory = directory;
+        this.prefix = prefix;
+    }
+
+    public JsonLinesSink rotate(long maxBytes, long maxMillis) {
+        Preconditions.checkState(maxBytes > 0 && maxMillis > 0, "rotation limits must be larger than 0");
+        this.maxBytes = maxBytes;
+        this.maxMillis = maxMillis;
+        return this;
+    }
+
+    @Override
+    public void write(Map<String, Object> record) throws IOException {
+        if (out != null && (bytes >= maxBytes || System.currentTimeMillis() - openedAt >= maxMillis)) {
+            out.close();
+            out = null;
+        }
+        if (out == null) {
+            open();
+        }
+        // encoded here, so maxBytes counts bytes and not chars
+        byte[] line = Json.toJson(record).getBytes(Charsets.UTF_8);
+        out.write(line);
+        out.write('\n');
+        bytes += line.length + 1;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file == null ? directory.getPath() : file.getPath();
+    }
+
+    private void open() throws IOException {
+        openedAt = System.currentTimeMillis();
+        String time = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(openedAt));
+        do {
+            file = new File(directory, prefix + "-" + time + "-" + sequence++ + ".jsonl");
+        } while (file.exists());
+        out = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        bytes = 0;
+    }
+}
@@ -0,0 +1,115 @@
+package crawler.sink;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import crawler.Command;
+import crawler.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * hands the Map put by Parse to a writer thread through a bounded buffer, workers wait only when the buffer is full.
+ * the writer takes every record buffered so far as one batch and flushes the sink once per batch,
+ * so batches grow while the sink is slow and the cost of a flush is shared by more records.
+ * the crawler closes it when the crawl is done, which writes what is left.
+ *
+ * @author chi
+ */
+public class Output implements Command, Closeable {
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(Output.class);
+    private final Sink sink;
+    private final BlockingQueue<Map<String, Object>> buffer;
+    private final int batchSize;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    public Output(Sink sink) {
+        this(sink, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public Output(Sink sink, int capacity, int batchSize) {
+        Preconditions.checkState(capacity > 0 && batchSize > 0, "capacity and batch size must be larger than 0");
+        this.sink = sink;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.writer = new Thread(this::run, "crawler-output-" + sink.getClass().getSimpleName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean execute(Context context) {
+        Map<String, Object> record = context.get(Map.class);
+        if (record == null) {
+            return true;
+        }
+        Preconditions.checkState(!closed, "output is closed");
+        try {
+            buffer.put(record);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
+    /**
+     * @return records waiting for the writer
+     */
+    public int pending() {
+        return buffer.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        sink.close();
+    }
+
+    private void run() {
+        List<Map<String, Object>> batch = Lists.newArrayListWithCapacity(batchSize);
+        while (!closed || !buffer.isEmpty()) {
+            try {
+                Map<String, Object> first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Map<String, Object>> batch) {
+        try {
+            for (Map<String, Object> record : batch) {
+                sink.write(record);
+            }
+            sink.flush();
+        } catch (IOException | RuntimeException e) {
+            logger.error("failed to write {} records to {}", batch.size(), sink, e);
+        }
+    }
+}
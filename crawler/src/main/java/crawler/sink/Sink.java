@@ -0,0 +1,19 @@
+package crawler.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * destination of parsed records, only called by the writer thread of Output.
+ *
+ * @author chi
+ */
+public interface Sink extends Closeable {
+    void write(Map<String, Object> record) throws IOException;
+
+    /**
+     * commits every record written since the last flush, called once per batch.
+     */
+    void flush() throws IOException;
+}
@@ -0,0 +1,17 @@
+package org.jsoup.select;
+
+/**
+ * QueryParser is package private in jsoup, Selector only runs a query against one root at a time. Extract needs
+ * the evaluator of a query to test elements during its own walk, a jsoup upgrade which changes QueryParser fails
+ * to compile here instead of at runtime.
+ *
+ * @author chi
+ */
+public final class Queries {
+    private Queries() {
+    }
+
+    public static Evaluator parse(String query) {
+        return QueryParser.parse(query);
+    }
+}
@@ -0,0 +1,100 @@
+package crawler;
+
+import com.google.common.base.Charsets;
+import crawler.command.Page;
+import crawler.command.ToDocument;
+import crawler.input.ArrayInput;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author chi
+ */
+public class ContextTest {
+    private static final byte[] PAGE = "<html><body><h1>shirt</h1></body></html>".getBytes(Charsets.UTF_8);
+
+    @Test
+    public void keys() {
+        Key<String> title = Key.create("title", String.class);
+        Key<String> name = Key.create("name", String.class);
+        assertSame(Key.of(String.class), Key.of(String.class));
+        assertNotSame(title, Key.of(String.class));
+
+        Context context = new Context("http://shop.com/");
+        context.put(title, "t");
+        context.put(name, "n");
+        context.put(String.class, "s");
+        assertEquals("t", context.get(title));
+        assertEquals("n", context.get(name));
+        assertEquals("s", context.get(String.class));
+        assertEquals("s", context.get(Key.of(String.class)));
+
+        Key<Integer> late = Key.create("late", Integer.class);
+        for (int i = 0; i < 20; i++) {
+            Key.create("filler", Object.class);
+        }
+        Key<Integer> later = Key.create("later", Integer.class);
+        assertNull(context.get(later));
+        context.put(later, 2);
+        context.put(late, 1);
+        assertEquals(Integer.valueOf(2), context.get(later));
+        assertEquals(Integer.valueOf(1), context.remove(late));
+        assertNull(context.get(late));
+    }
+
+    @Test
+    public void consume() {
+        AtomicInteger checked = new AtomicInteger();
+        Crawler crawler = new Crawler(1);
+        crawler.input(new ArrayInput());
+        crawler.when("http://shop.com/.*").then(new ToDocument(), new Name(), new Name(), context -> {
+            assertNull(context.get(byte[].class));
+            assertNull(context.get(Document.class));
+            assertNull(context.get(Page.class));
+            assertEquals("shirt", context.get(Map.class).get("name"));
+            checked.incrementAndGet();
+            return true;
+        });
+        crawler.doCrawl(context());
+        assertEquals(1, checked.get());
+    }
+
+    @Test
+    public void keep() {
+        AtomicInteger checked = new AtomicInteger();
+        Crawler crawler = new Crawler(1);
+        crawler.input(new ArrayInput());
+        crawler.when("http://shop.com/.*").then(new ToDocument().keepBytes(), new Name().keepDocument(), context -> {
+            assertNotNull(context.get(byte[].class));
+            assertNotNull(context.get(Document.class));
+            checked.incrementAndGet();
+            return true;
+        });
+        crawler.doCrawl(context());
+        assertEquals(1, checked.get());
+    }
+
+    private Context context() {
+        Context context = new Context("http://shop.com/p/1");
+        context.put(byte[].class, PAGE);
+        return context;
+    }
+
+    private static class Name extends crawler.command.Parse {
+        @Override
+        protected Map<String, Object> parse(Context context) {
+            Map<String, Object> values = new java.util.HashMap<>();
+            values.put("name", page(context).element("h1").text());
+            return values;
+        }
+    }
+}
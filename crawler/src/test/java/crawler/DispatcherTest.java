@@ -0,0 +1,35 @@
+package crawler;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class DispatcherTest {
+    @Test
+    public void blockInsteadOfReject() throws Exception {
+        Dispatcher dispatcher = new Dispatcher(2, 5);
+        AtomicInteger completed = new AtomicInteger();
+
+        for (int i = 0; i < 1000; i++) {
+            dispatcher.submit(completed::incrementAndGet);
+        }
+
+        dispatcher.awaitIdle();
+        dispatcher.shutdown();
+
+        assertEquals(1000, completed.get());
+        assertEquals(0, dispatcher.inFlight());
+    }
+
+    @Test
+    public void awaitIdleWithoutTasks() throws Exception {
+        Dispatcher dispatcher = new Dispatcher(1, 1);
+        dispatcher.awaitIdle();
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,207 @@
+package crawler;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.sun.net.httpserver.HttpServer;
+import crawler.command.Get;
+import crawler.command.ToDocument;
+import crawler.input.ArrayInput;
+import crawler.input.FileInput;
+import crawler.metrics.Metrics;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class FailurePolicyTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final List<Long> times = Lists.newCopyOnWriteArrayList();
+    private HttpServer server;
+    private String base;
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            int count = requests.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+            times.add(System.nanoTime());
+            if (path.startsWith("/slow")) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            // /flaky fails twice, /dead always fails, /missing is a 404 which is not retried
+            int status = path.startsWith("/dead") || path.startsWith("/flaky") && count <= 2 ? 503
+                : path.startsWith("/missing") ? 404 : 200;
+            byte[] body = ("<html><body>" + path + "</body></html>").getBytes(Charsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void retry() throws Exception {
+        crawl(false);
+    }
+
+    @Test
+    public void retryAsync() throws Exception {
+        crawl(true);
+    }
+
+    private void crawl(boolean async) throws Exception {
+        File deadLetters = folder.newFile();
+        List<String> parsed = Lists.newCopyOnWriteArrayList();
+        Crawler crawler = new Crawler(4)
+            .report(0)
+            .failurePolicy(new FailurePolicy().retries(3).backoff(10, 50).circuitBreaker(100, 1000).deadLetters(deadLetters))
+            .input(new ArrayInput(base + "/flaky/1", base + "/flaky/2", base + "/dead/1", base + "/missing/1", base + "/ok/1"));
+        if (async) {
+            crawler.async();
+        }
+        crawler.when(base + "/.*").then(new ToDocument(Charsets.UTF_8), context -> {
+            parsed.add(context.get(Document.class).body().text());
+            return true;
+        });
+        crawler.crawl();
+
+        assertTrue(parsed.contains("/flaky/1"));
+        assertTrue(parsed.contains("/flaky/2"));
+        assertTrue(parsed.contains("/missing/1"));
+        assertFalse(parsed.contains("/dead/1"));
+        assertEquals(3, requests.get("/flaky/1").get());
+        assertEquals(4, requests.get("/dead/1").get());
+        assertEquals(1, requests.get("/missing/1").get());
+        assertEquals(2 + 2 + 3, crawler.metrics().counter("retried").sum());
+
+        List<String> lines = Files.readLines(deadLetters, Charsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith(base + "/dead/1\t4\t"));
+        try (FileInput input = new FileInput(deadLetters)) {
+            assertEquals(base + "/dead/1", input.iterator().next().url());
+        }
+    }
+
+    @Test
+    public void politeRetries() throws Exception {
+        Crawler crawler = new Crawler(2)
+            .report(0)
+            .politeness(10, 1)
+            .failurePolicy(new FailurePolicy().retries(3).backoff(10, 10))
+            .input(new ArrayInput(base + "/flaky/1"));
+        crawler.when(base + "/.*").then(new ToDocument(Charsets.UTF_8));
+        crawler.crawl();
+
+        assertEquals(3, requests.get("/flaky/1").get());
+        for (int i = 1; i < times.size(); i++) {
+            assertTrue("retries wait for a permit of the host", (times.get(i) - times.get(i - 1)) / 1000000 >= 90);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void halfOpenWhileBusy() throws Exception {
+        halfOpen(false);
+    }
+
+    @Test(timeout = 10000)
+    public void halfOpenWhileBusyAsync() throws Exception {
+        halfOpen(true);
+    }
+
+    /**
+     * the breaker of /dead half opens while the only slot is taken by /slow, on another host so its success does
+     * not close the breaker. the trial must still go out.
+     */
+    private void halfOpen(boolean async) throws Exception {
+        String other = base.replace("127.0.0.1", "localhost");
+        List<String> parsed = Lists.newCopyOnWriteArrayList();
+        Crawler crawler = new Crawler(1)
+            .report(0)
+            .queueDepth(0)
+            .failurePolicy(new FailurePolicy().retries(2).backoff(10, 10).circuitBreaker(1, 50))
+            .input(new ArrayInput(base + "/dead/1", base + "/dead/2", other + "/slow/1", other + "/slow/2", other + "/slow/3"));
+        if (async) {
+            crawler.async();
+        }
+        crawler.when("http://.*").then(new ToDocument(Charsets.UTF_8), context -> {
+            parsed.add(context.get(Document.class).body().text());
+            return true;
+        });
+        crawler.crawl();
+
+        assertEquals(3, parsed.size());
+        assertEquals(3, requests.get("/dead/1").get());
+        assertEquals(3, requests.get("/dead/2").get());
+        assertEquals(2, crawler.metrics().counter("failed").sum());
+    }
+
+    @Test
+    public void circuitBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000);
+        assertEquals(0, breaker.delay(0));
+        assertFalse(breaker.failure(0));
+        assertTrue(breaker.failure(10));
+        assertEquals(500, breaker.delay(510));
+
+        assertEquals(0, breaker.delay(1010));
+        assertEquals(1000, breaker.delay(1020));
+        assertTrue(breaker.failure(1030));
+        assertEquals(1000, breaker.delay(1030));
+
+        assertEquals(0, breaker.delay(2030));
+        breaker.cancelTrial();
+        assertEquals("the trial was given back", 0, breaker.delay(2030));
+        breaker.success();
+        assertEquals(0, breaker.delay(2040));
+    }
+
+    @Test
+    public void tryFetch() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Get get = new Get(Crawler.httpClient(), "test", null);
+        try (AsyncFetcher fetcher = new AsyncFetcher(get, new HttpConfig().asyncClient(1), 1, new Metrics().timer("get"))) {
+            fetcher.fetch(new Context(base + "/slow/1"), done::countDown, e -> done.countDown());
+            assertFalse("the only permit is taken", fetcher.tryFetch(new Context(base + "/ok/1"), () -> {
+            }, e -> {
+            }));
+            done.await();
+            assertEquals(0, fetcher.inFlight());
+        }
+        assertNull(requests.get("/ok/1"));
+    }
+}
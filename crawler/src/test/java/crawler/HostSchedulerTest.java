@@ -0,0 +1,91 @@
+package crawler;
+
+import crawler.scheduler.HostScheduler;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class HostSchedulerTest {
+    @Test
+    public void host() {
+        assertEquals("www.threadless.com", HostScheduler.host("https://WWW.threadless.com:443/product/1"));
+        assertEquals("a.com", HostScheduler.host("http://a.com?q=1"));
+    }
+
+    @Test
+    public void busyHostDoesNotBlockOthers() throws Exception {
+        HostScheduler scheduler = new HostScheduler(1000, 1, 10);
+        scheduler.offer(new Context("http://a.com/1"));
+        scheduler.offer(new Context("http://a.com/2"));
+        scheduler.offer(new Context("http://b.com/1"));
+        scheduler.close();
+
+        Context first = scheduler.take();
+        assertEquals("http://a.com/1", first.url());
+        assertEquals("http://b.com/1", scheduler.take().url());
+
+        scheduler.release(first);
+        assertEquals("http://a.com/2", scheduler.take().url());
+        assertNull(scheduler.take());
+    }
+
+    @Test
+    public void rateLimit() throws Exception {
+        HostScheduler scheduler = new HostScheduler(20, 10, 10);
+        for (int i = 0; i < 5; i++) {
+            scheduler.offer(new Context("http://a.com/" + i));
+        }
+        scheduler.close();
+
+        long start = System.nanoTime();
+        int count = 0;
+        while (scheduler.take() != null) {
+            count++;
+        }
+
+        assertEquals(5, count);
+        assertTrue((System.nanoTime() - start) / 1000000 >= 190);
+    }
+
+    @Test
+    public void idleHostsAreDropped() throws Exception {
+        HostScheduler scheduler = new HostScheduler(5, 1, 100);
+        for (int i = 0; i < 50; i++) {
+            scheduler.offer(new Context("http://host" + i + ".com/"));
+            scheduler.release(scheduler.take());
+        }
+        assertEquals(0, scheduler.size());
+        assertEquals("buckets are not full yet", 50, scheduler.hosts());
+
+        Thread.sleep(250);
+        scheduler.offer(new Context("http://last.com/"));
+        assertEquals(1, scheduler.size());
+        assertEquals(1, scheduler.hosts());
+        scheduler.close();
+        assertEquals("http://last.com/", scheduler.take().url());
+        assertNull(scheduler.take());
+    }
+
+    @Test
+    public void retriesTakePermits() throws Exception {
+        HostScheduler scheduler = new HostScheduler(5, 1, 10);
+        Context retry = new Context("http://a.com/retry");
+        assertTrue(scheduler.tryAcquire(retry));
+        assertFalse("no free connection", scheduler.tryAcquire(new Context("http://a.com/2")));
+        scheduler.release(retry);
+        assertFalse("no permit yet", scheduler.tryAcquire(retry));
+
+        scheduler.offer(new Context("http://a.com/1"));
+        scheduler.close();
+        long start = System.nanoTime();
+        assertEquals("http://a.com/1", scheduler.take().url());
+        assertTrue("waits for the permit taken by the retry", (System.nanoTime() - start) / 1000000 >= 150);
+        assertNull(scheduler.take());
+    }
+}
@@ -1,8 +1,12 @@
 package crawler;
 
 import crawler.command.Page;
+import org.jsoup.Jsoup;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
 /**
  * @author chi
  */
@@ -12,4 +16,16 @@ public class PageTest {
         Page.help("https://www.threadless.com/product/3711");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void element() {
+        Page page = Page.of(Jsoup.parse("<html><body><h1>name</h1>"
+            + "<div id='guys'><ul class='list'><li>a</li> <li class='x y'>b</li></ul></div>"
+            + "<div><span>c</span><span class='x'>d</span></div></body></html>"));
+
+        assertEquals("name", page.text("h1"));
+        assertEquals("a", page.text(".list li[0]"));
+        assertEquals("b", page.text(".y"));
+        assertEquals("d", page.text(" #document html[0] body[1] div[2] span[1]"));
+        assertNull(page.element("span"));
+    }
+}
@@ -0,0 +1,57 @@
+package crawler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class RouterTest {
+    @Test
+    public void prefix() {
+        assertEquals("https://www\uFFFFthreadless\uFFFFcom/product/", prefix("https://www.threadless.com/product/\\d+/.*"));
+        assertEquals("http://a.com/", prefix("^http://a\\.com/(x|y)/.*"));
+        assertEquals("http://d.com/", prefix("http://d\\.com/x?y"));
+        assertEquals("http://e.com/a", prefix("http://e\\.com/a+b"));
+        assertEquals("http", prefix("https?://f.com/.*"));
+        assertEquals("", prefix("a|http://b.com/.*"));
+        assertEquals("", prefix("(?i)http://c.com/.*"));
+    }
+
+    @Test
+    public void sameAsLinearScan() {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String regex : Arrays.asList("https://www.threadless.com/product/\\d+/.*", "https://www.threadless.com/.*",
+            "^http://a\\.com/(x|y)/.*", "a|http://b.com/.*", "(?i)HTTP://C.com/.*", "http://d\\.com/x?y",
+            "http://e\\.com/a+b", "https?://f.com/.*", "http://g.com/[a-z]+", "http://h.com/p{2}x", ".*")) {
+            patterns.add(Pattern.compile(regex));
+        }
+
+        Router<Integer> router = new Router<>();
+        for (int i = 0; i < patterns.size(); i++) {
+            router.add(patterns.get(i), i);
+        }
+
+        for (String url : Arrays.asList("https://www.threadless.com/product/6503/shirt", "https://www.threadless.com/about",
+            "http://a.com/x/1", "http://aXcom/y/1", "a", "http://b.com/", "http://c.com/q", "http://d.com/y", "http://d.com/xy",
+            "http://e.com/aaab", "http://f.com/", "https://fxcom/1", "http://g.com/abc", "http://g.com/1", "http://h.com/ppx", "")) {
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < patterns.size(); i++) {
+                if (patterns.get(i).matcher(url).matches()) {
+                    expected.add(i);
+                }
+            }
+            assertEquals(url, expected, router.route(url));
+        }
+    }
+
+    private String prefix(String regex) {
+        return new String(Router.prefix(Pattern.compile(regex)));
+    }
+}
@@ -0,0 +1,52 @@
+package crawler;
+
+import com.google.common.collect.Lists;
+import crawler.input.ArrayInput;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class SplitTest {
+    @Test
+    public void splittable() {
+        List<Iterable<Context>> parts = Crawler.split(new ArrayInput("http://a.com/1", "http://a.com/2",
+            "http://a.com/3", "http://a.com/4", "http://a.com/5"), 4);
+        assertEquals(4, parts.size());
+        int count = 0;
+        for (Iterable<Context> part : parts) {
+            count += Lists.newArrayList(part).size();
+        }
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void iteratedOnce() {
+        AtomicInteger opened = new AtomicInteger();
+        Input input = new Input() {
+            @Override
+            public Iterator<Context> iterator() {
+                opened.incrementAndGet();
+                return Lists.newArrayList(new Context("http://a.com/1"), new Context("http://a.com/2")).iterator();
+            }
+
+            @Override
+            public void end(Context context) {
+            }
+        };
+
+        for (int producers : new int[]{1, 4}) {
+            opened.set(0);
+            List<Iterable<Context>> parts = Crawler.split(input, producers);
+            assertEquals(1, parts.size());
+            assertEquals(2, Lists.newArrayList(parts.get(0)).size());
+            assertEquals("opened once with " + producers + " producers", 1, opened.get());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package crawler;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpServer;
+import crawler.command.ToDocument;
+import crawler.input.ArrayInput;
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class StreamingTest {
+    private HttpServer server;
+    private String base;
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = ("<html><body><h1>" + exchange.getRequestURI().getPath() + "</h1></body></html>")
+                .getBytes(Charsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void pipes() {
+        crawl(false);
+    }
+
+    @Test
+    public void pipesAsync() {
+        crawl(true);
+    }
+
+    /**
+     * both pipes match, the second one reads the document the first one streamed the body into.
+     */
+    private void crawl(boolean async) {
+        List<String> parsed = new CopyOnWriteArrayList<>();
+        Crawler crawler = new Crawler(2).report(0).streaming().input(new ArrayInput(base + "/p/1", base + "/p/2"));
+        if (async) {
+            crawler.async();
+        }
+        crawler.when(base + "/p/.*").then(new ToDocument(), context -> {
+            parsed.add("first " + context.get(Document.class).select("h1").text());
+            return true;
+        });
+        crawler.when(base + "/p/1").then(new ToDocument(), context -> {
+            parsed.add("second " + context.get(Document.class).select("h1").text());
+            return true;
+        });
+        crawler.crawl();
+
+        assertEquals(3, parsed.size());
+        assertEquals(1, parsed.stream().filter("second /p/1"::equals).count());
+        assertEquals(1, parsed.stream().filter("first /p/2"::equals).count());
+    }
+}
@@ -0,0 +1,188 @@
+package crawler.cluster;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import crawler.Context;
+import crawler.input.SeedInput;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class ClusterTest {
+    private static final List<String> NODES = ImmutableList.of("a", "b", "c");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ring() {
+        HashRing three = new HashRing(NODES, 128);
+        HashRing four = new HashRing(ImmutableList.of("a", "b", "c", "d"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        int moved = 0;
+        for (int i = 0; i < 3000; i++) {
+            String host = "host" + i + ".com";
+            String owner = three.owner(host);
+            counts.merge(owner, 1, Integer::sum);
+            String next = four.owner(host);
+            if (!owner.equals(next)) {
+                assertEquals("only hosts of the new node move", "d", next);
+                moved++;
+            }
+        }
+        for (String node : NODES) {
+            assertTrue(node + " " + counts, counts.get(node) > 600);
+        }
+        assertTrue("moved " + moved, moved > 400 && moved < 1200);
+    }
+
+    @Test
+    public void local() throws Exception {
+        LocalTransport transport = new LocalTransport();
+        List<ClusterNode> nodes = Lists.newArrayList();
+        for (String node : NODES) {
+            nodes.add(new ClusterNode(node, NODES, transport).batchSize(4));
+        }
+        crawl(nodes);
+    }
+
+    @Test
+    public void sockets() throws Exception {
+        Map<String, InetSocketAddress> addresses = new HashMap<>();
+        for (String node : NODES) {
+            addresses.put(node, new InetSocketAddress("127.0.0.1", freePort()));
+        }
+        List<ClusterNode> nodes = Lists.newArrayList();
+        for (String node : NODES) {
+            nodes.add(new ClusterNode(node, NODES, new SocketTransport(addresses)).flushMillis(50));
+        }
+        crawl(nodes);
+    }
+
+    @Test
+    public void longUrl() throws Exception {
+        Map<String, InetSocketAddress> addresses = new HashMap<>();
+        addresses.put("a", new InetSocketAddress("127.0.0.1", freePort()));
+        addresses.put("b", new InetSocketAddress("127.0.0.1", freePort()));
+        String url = "http://host.com/?q=" + Strings.repeat("\u00e9", 40000);
+        BlockingQueue<List<String>> received = new LinkedBlockingQueue<>();
+        try (SocketTransport a = new SocketTransport(addresses); SocketTransport b = new SocketTransport(addresses)) {
+            b.listen("b", received::add);
+            a.send("b", ImmutableList.of(url, "http://host.com/"));
+            a.send("b", ImmutableList.of("http://next.com/"));
+            assertEquals(ImmutableList.of(url, "http://host.com/"), received.poll(5, TimeUnit.SECONDS));
+            assertEquals(ImmutableList.of("http://next.com/"), received.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void deadPeer() throws Exception {
+        Transport dead = new Transport() {
+            @Override
+            public void listen(String node, Consumer<List<String>> receiver) {
+            }
+
+            @Override
+            public void send(String node, List<String> urls) throws IOException {
+                throw new IOException("peer " + node + " is down");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ClusterNode node = new ClusterNode("a", ImmutableList.of("a", "b"), dead).batchSize(4).maxPending(10);
+        int forwarded = 0;
+        for (int i = 0; forwarded < 25; i++) {
+            String url = "http://host" + i + ".com/";
+            if (!node.owns(url)) {
+                node.forward(url);
+                forwarded++;
+            }
+        }
+        node.flush();
+        assertEquals(10, node.pending());
+        assertEquals(15, node.dropped());
+        assertEquals(0, node.forwarded());
+        node.close();
+    }
+
+    private SeedInput input(ClusterNode node) throws IOException {
+        return new SeedInput(new File(folder.getRoot(), node.id() + ".bloom"), "http://seed.com/").cluster(node);
+    }
+
+    private void crawl(List<ClusterNode> nodes) throws Exception {
+        List<SeedInput> inputs = Lists.newArrayList();
+        for (ClusterNode node : nodes) {
+            inputs.add(input(node));
+        }
+
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            html.append("<a href=\"http://host").append(i).append(".com/page\">").append(i).append("</a>");
+        }
+        Document document = Jsoup.parse(html.toString(), "http://seed.com/");
+        Context context = new Context("http://seed.com/");
+        context.put(Document.class, document);
+        for (SeedInput input : inputs) {
+            input.end(context);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        // peers forward the same links, wait until all of them are sent and not only the first copy arrived
+        while ((pending(inputs) < 31 || nodes.stream().anyMatch(node -> node.pending() > 0))
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals("every url is pending once, on its owner", 31, pending(inputs));
+
+        HashRing ring = new HashRing(NODES, 128);
+        for (int i = 0; i < NODES.size(); i++) {
+            long owned = 0;
+            for (int j = 0; j < 30; j++) {
+                if (ring.owner("host" + j + ".com").equals(NODES.get(i))) {
+                    owned++;
+                }
+            }
+            if (ring.owner("seed.com").equals(NODES.get(i))) {
+                owned++;
+            }
+            assertEquals(NODES.get(i), owned, inputs.get(i).pending());
+        }
+
+        for (SeedInput input : inputs) {
+            input.close();
+        }
+    }
+
+    private long pending(List<SeedInput> inputs) {
+        return inputs.stream().mapToLong(SeedInput::pending).sum();
+    }
+
+    private int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
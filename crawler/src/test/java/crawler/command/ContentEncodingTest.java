@@ -0,0 +1,106 @@
+package crawler.command;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpServer;
+import crawler.Context;
+import crawler.Crawler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class ContentEncodingTest {
+    private static final byte[] PAGE = "<html><body><h1>compressed</h1></body></html>".getBytes(Charsets.UTF_8);
+
+    private HttpServer server;
+    private String acceptEncoding;
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            String coding = exchange.getRequestURI().getPath().substring(1);
+            byte[] body = encode(coding, PAGE);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.getResponseHeaders().set("Content-Encoding", coding);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void decode() throws Exception {
+        Get get = new Get(Crawler.httpClient(), "test", null);
+        for (String coding : new String[]{"gzip", "deflate", "br", "identity"}) {
+            Context context = new Context(url(coding));
+            get.execute(context);
+            assertArrayEquals(coding, PAGE, context.get(byte[].class));
+        }
+        assertEquals(ContentEncoding.ACCEPT, acceptEncoding);
+    }
+
+    @Test
+    public void decodeStream() throws Exception {
+        Get get = new Get(Crawler.httpClient(), "test", null).streaming(true);
+        for (String coding : new String[]{"gzip", "br"}) {
+            Context context = new Context(url(coding));
+            get.execute(context);
+            try (Body body = context.get(Body.class)) {
+                assertArrayEquals(coding, PAGE, body.bytes());
+            }
+        }
+    }
+
+    private String url(String coding) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + coding;
+    }
+
+    private static byte[] encode(String coding, byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        switch (coding) {
+            case "gzip":
+                try (OutputStream out = new GZIPOutputStream(bytes)) {
+                    out.write(content);
+                }
+                break;
+            case "deflate":
+                try (OutputStream out = new DeflaterOutputStream(bytes)) {
+                    out.write(content);
+                }
+                break;
+            case "br":
+                // one uncompressed meta-block after a 16 bit window, then an empty last meta-block
+                int header = (content.length - 1) << 4 | 1 << 20;
+                bytes.write(header);
+                bytes.write(header >>> 8);
+                bytes.write(header >>> 16);
+                bytes.write(content);
+                bytes.write(0x03);
+                break;
+            default:
+                bytes.write(content);
+        }
+        return bytes.toByteArray();
+    }
+}
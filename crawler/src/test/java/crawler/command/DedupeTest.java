@@ -0,0 +1,98 @@
+package crawler.command;
+
+import com.google.common.base.Charsets;
+import crawler.Context;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class DedupeTest {
+    @Test
+    public void nearDuplicates() {
+        Dedupe dedupe = new Dedupe();
+        String product = product(1);
+        assertTrue(dedupe.execute(document("http://shop.com/p/1", product)));
+        assertFalse("same page with a tracking parameter",
+            dedupe.execute(document("http://shop.com/p/1?utm_source=x", product)));
+        assertFalse("same product with another footer",
+            dedupe.execute(document("http://shop.com/p/1?ref=y", product.replace("2014", "2015"))));
+        assertTrue(dedupe.execute(document("http://shop.com/p/2", product(2))));
+        assertEquals(2, dedupe.duplicates());
+        assertEquals(2, dedupe.size());
+    }
+
+    @Test
+    public void sameUrlAgain() {
+        Dedupe dedupe = new Dedupe();
+        String product = product(1);
+        assertTrue(dedupe.execute(document("http://shop.com/p/1", product)));
+        assertTrue("fetched again after a failure", dedupe.execute(document("http://shop.com/p/1", product)));
+        assertTrue(dedupe.execute(document("http://shop.com/p/1", product.replace("2014", "2015"))));
+        assertFalse(dedupe.execute(document("http://shop.com/p/1?ref=y", product)));
+        assertEquals(1, dedupe.duplicates());
+        assertEquals(1, dedupe.size());
+    }
+
+    @Test
+    public void bytes() {
+        Dedupe dedupe = new Dedupe();
+        Context first = new Context("http://shop.com/p/1");
+        first.put(byte[].class, product(1).getBytes(Charsets.UTF_8));
+        Context second = new Context("http://shop.com/p/1?s=1");
+        second.put(Body.class, Body.of(product(1).getBytes(Charsets.UTF_8), Charsets.UTF_8));
+        assertTrue(dedupe.execute(first));
+        assertFalse(dedupe.execute(second));
+    }
+
+    @Test
+    public void index() {
+        SimHashIndex index = new SimHashIndex(3);
+        Random random = new Random(42);
+        long[] fingerprints = new long[5000];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = random.nextLong();
+            assertTrue(index.add(fingerprints[i], i));
+        }
+        for (int i = 0; i < fingerprints.length; i++) {
+            long near = fingerprints[i] ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64));
+            assertFalse(index.add(near, -1));
+            assertFalse(index.add(fingerprints[i], -1));
+            assertTrue("not a duplicate of itself", index.add(near, i));
+        }
+        assertEquals(fingerprints.length, index.size());
+    }
+
+    @Test
+    public void distance() {
+        long a = SimHash.fingerprint(product(1));
+        long b = SimHash.fingerprint(product(1).replace("2014 shop", "2015 shop inc"));
+        long c = SimHash.fingerprint(product(2));
+        assertTrue(SimHash.distance(a, b) <= 3);
+        assertTrue(SimHash.distance(a, c) > 3);
+    }
+
+    private Context document(String url, String html) {
+        Context context = new Context(url);
+        Document document = Jsoup.parse(html, url);
+        context.put(Document.class, document);
+        return context;
+    }
+
+    private String product(int id) {
+        StringBuilder b = new StringBuilder("<html><body><h1>product ").append(id).append("</h1><ul>");
+        Random random = new Random(id);
+        for (int i = 0; i < 60; i++) {
+            b.append("<li><b>feature</b> ").append(Long.toString(random.nextLong(), 36)).append(" of the item</li>");
+        }
+        return b.append("</ul><p class=\"copyright\">copyright 2014 shop</p></body></html>").toString();
+    }
+}
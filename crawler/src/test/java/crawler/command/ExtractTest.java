@@ -0,0 +1,93 @@
+package crawler.command;
+
+import crawler.Context;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.select.Elements;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author chi
+ */
+public class ExtractTest {
+    private static final String HTML = "<html><head><title>shirt</title></head><body><h1>name</h1>"
+        + "<div id='guys'><h2><span class='Active_Price price'>$20</span><span class='old_price price'>$25</span></h2>"
+        + "<ul class='list'><li>a</li> <li class='x y x'>b</li></ul><p class='select_desc'>soft <b>cotton</b></p></div>"
+        + "<div><span>c</span><span class='x'>d</span><a href='/p/2' class='next'>next</a></div>"
+        + "<div class='gallery'><img src='1.jpg'><img src='2.jpg'></div></body></html>";
+    private static final String[] QUERIES = {
+        "h1", "#guys h2 .active_price", "#guys .select_desc", ".price:not(.old_price)", "span.price", "div > span",
+        "li.x", ".gallery img", "img[src$=2.jpg]", "a[href]", "h1, h2", "*", "ul li:eq(1)", ".list li:contains(b)",
+        "p:has(b)", "div :not(span)", "#none", "table td",
+    };
+
+    @Test
+    public void sameAsSelect() {
+        Extract extract = new Extract();
+        for (int i = 0; i < QUERIES.length; i++) {
+            extract.text("text" + i, QUERIES[i]).html("html" + i, QUERIES[i]).attr("class" + i, QUERIES[i], "class");
+        }
+        Document document = Jsoup.parse(HTML, "http://shop.com/");
+        Map<String, Object> values = parse(extract, document);
+        for (int i = 0; i < QUERIES.length; i++) {
+            Elements elements = document.select(QUERIES[i]);
+            if (elements.isEmpty()) {
+                assertNull(QUERIES[i], values.get("text" + i));
+                continue;
+            }
+            assertEquals(QUERIES[i], elements.text(), values.get("text" + i));
+            assertEquals(QUERIES[i], elements.html(), values.get("html" + i));
+            assertEquals(QUERIES[i], elements.attr("class"), values.get("class" + i));
+        }
+    }
+
+    @Test
+    public void layoutKeys() {
+        Document document = Jsoup.parse(HTML, "http://shop.com/");
+        Page page = Page.of(document);
+        String[] keys = {".list li[0]", " #document html[0] body[1] div[2] span[0]"};
+        Extract extract = new Extract();
+        for (int i = 0; i < keys.length; i++) {
+            extract.text("key" + i, keys[i]);
+        }
+        extract.text("wrong tag", ".list ol[0]").text("not unique", ".x span[0]").attr("image", ".gallery img[1]", "src")
+            .text("own key", "#guys h2[0] span[1]");
+
+        Map<String, Object> values = parse(extract, document);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], page.text(keys[i]), values.get("key" + i));
+        }
+        assertEquals("2.jpg", values.get("image"));
+        assertEquals("found by path though page names it .old_price", "$25", values.get("own key"));
+        assertNull(values.get("wrong tag"));
+        assertNull(values.get("not unique"));
+    }
+
+    @Test
+    public void subject() {
+        assertArrayEquals(new String[]{".", "active_price"}, Extractor.subject("#guys h2 .Active_Price"));
+        assertArrayEquals(new String[]{"#", "main"}, Extractor.subject("div>p#main.x"));
+        assertArrayEquals(new String[]{".", "price"}, Extractor.subject("span.price:not(.old)"));
+        assertArrayEquals(new String[]{"", "img"}, Extractor.subject(".gallery img[src$=.jpg]"));
+        assertArrayEquals(new String[]{"", "li"}, Extractor.subject("li:contains(a .b)"));
+        assertNull(Extractor.subject("h1, h2"));
+        assertNull(Extractor.subject("div :not(span)"));
+        assertNull(Extractor.subject("[href]"));
+        assertNull(Extractor.subject("ns|tag"));
+    }
+
+    private Map<String, Object> parse(Extract extract, Document document) {
+        Context context = new Context("http://shop.com/");
+        context.put(Document.class, document);
+        extract.execute(context);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> values = context.get(Map.class);
+        return values;
+    }
+}
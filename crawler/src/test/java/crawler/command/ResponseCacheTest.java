@@ -0,0 +1,88 @@
+package crawler.command;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpServer;
+import crawler.Context;
+import crawler.Crawler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class ResponseCacheTest {
+    private static final byte[] PAGE = "<html><body><h1>cached</h1></body></html>".getBytes(Charsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final AtomicInteger full = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            full.incrementAndGet();
+            exchange.sendResponseHeaders(200, PAGE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PAGE);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/p/1";
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void revalidate() throws Exception {
+        File directory = folder.newFolder();
+        for (int i = 0; i < 3; i++) {
+            Context context = new Context(url);
+            new Get(Crawler.httpClient(), "test", null).cache(directory).execute(context);
+            assertArrayEquals(PAGE, context.get(byte[].class));
+        }
+        assertEquals(1, full.get());
+        assertEquals(2, notModified.get());
+    }
+
+    @Test
+    public void streaming() throws Exception {
+        File directory = folder.newFolder();
+        Get get = new Get(Crawler.httpClient(), "test", null).streaming(true).cache(directory);
+        for (int i = 0; i < 2; i++) {
+            Context context = new Context(url);
+            get.execute(context);
+            Body body = context.get(Body.class);
+            assertEquals(Charsets.UTF_8, body.charset());
+            assertArrayEquals(PAGE, body.bytes());
+        }
+        assertEquals(1, full.get());
+        assertEquals(1, notModified.get());
+    }
+}
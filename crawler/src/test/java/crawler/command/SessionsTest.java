@@ -0,0 +1,101 @@
+package crawler.command;
+
+import com.google.common.collect.Sets;
+import com.sun.net.httpserver.HttpServer;
+import crawler.Context;
+import crawler.Crawler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class SessionsTest {
+    private final Map<String, String> cookies = new ConcurrentHashMap<>();
+    private HttpServer server;
+
+    @Before
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+            cookies.put(path, cookie == null ? "" : cookie);
+            if (path.startsWith("/login")) {
+                exchange.getResponseHeaders().set("Set-Cookie", "sid=" + path.substring(7) + "; Path=/");
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stop() {
+        server.stop(0);
+    }
+
+    @Test
+    public void seeded() {
+        Get get = new Get(Crawler.httpClient(), "test", "user=chi; lang=en");
+        get.execute(new Context(url("/page")));
+        assertEquals(Sets.newHashSet("user=chi", "lang=en"), Sets.newHashSet(cookies.get("/page").split("; ")));
+    }
+
+    @Test
+    public void perThread() throws Exception {
+        Get get = new Get(Crawler.httpClient(), "test", null);
+        get.execute(new Context(url("/login/a")));
+
+        Thread other = new Thread(() -> get.execute(new Context(url("/other"))));
+        other.start();
+        other.join();
+        get.execute(new Context(url("/same")));
+
+        assertEquals("", cookies.get("/other"));
+        assertEquals("sid=a", cookies.get("/same"));
+    }
+
+    @Test
+    public void perHost() throws Exception {
+        Sessions sessions = Sessions.perHost("user=a", "user=b");
+        Get get = new Get(Crawler.httpClient(), "test", null).sessions(sessions);
+        get.execute(new Context(url("/first")));
+        get.execute(new Context("http://localhost:" + server.getAddress().getPort() + "/second"));
+
+        Thread other = new Thread(() -> get.execute(new Context(url("/third"))));
+        other.start();
+        other.join();
+
+        assertEquals("user=a", cookies.get("/first"));
+        assertEquals("user=b", cookies.get("/second"));
+        assertEquals("user=a", cookies.get("/third"));
+        assertEquals(2, sessions.size());
+    }
+
+    @Test
+    public void shared() throws Exception {
+        Get get = new Get(Crawler.httpClient(), "test", null).sessions(Sessions.shared("user=chi"));
+        get.execute(new Context(url("/login/b")));
+
+        Thread other = new Thread(() -> get.execute(new Context(url("/other"))));
+        other.start();
+        other.join();
+        get.execute(new Context("http://localhost:" + server.getAddress().getPort() + "/second"));
+
+        assertEquals(Sets.newHashSet("user=chi", "sid=b"), Sets.newHashSet(cookies.get("/other").split("; ")));
+        assertEquals("the login cookie goes to every host, sid only to its own", "user=chi", cookies.get("/second"));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,109 @@
+package crawler.command;
+
+import crawler.Context;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class TemplateTest {
+    private static final String[] KEYS = {"h1", ".y", ".list li[0]", " #document html[0] body[1] div[2] span[1]"};
+
+    @Test
+    public void sameLayout() {
+        Template template = new Template();
+        for (int i = 0; i < 5; i++) {
+            Document document = Jsoup.parse(product(i, ""));
+            Page page = new Page(document, template);
+            Page indexed = Page.of(document);
+            for (String key : KEYS) {
+                assertEquals(key, indexed.text(key), page.text(key));
+            }
+        }
+        assertEquals("the first page is indexed once", 1, template.misses());
+        assertEquals(4 * KEYS.length, template.hits());
+    }
+
+    @Test
+    public void changedLayout() {
+        Template template = new Template();
+        new Page(Jsoup.parse(product(1, "")), template).text(".list li[0]");
+
+        Document document = Jsoup.parse(product(2, "<p>sale</p>"));
+        Page page = new Page(document, template);
+        Page indexed = Page.of(document);
+        for (String key : KEYS) {
+            assertEquals(key, indexed.text(key), page.text(key));
+        }
+        assertEquals("the shifted path does not fit, so the index is used", 0, template.hits());
+
+        assertEquals("3 a", new Page(Jsoup.parse(product(3, "<p>sale</p>")), template).text(".list li[0]"));
+        assertEquals("learned again", 1, template.hits());
+    }
+
+    @Test
+    public void missing() {
+        Template template = new Template();
+        new Page(Jsoup.parse(product(1, "")), template).text(".list li[0]");
+        Page page = new Page(Jsoup.parse("<html><body><h1>name</h1></body></html>"), template);
+        assertNull(page.element(".list li[0]"));
+    }
+
+    @Test
+    public void repeatedAnchor() {
+        String one = "<html><body><p class='price'>$1</p></body></html>";
+        String two = "<html><body><p class='price'>$2</p><p class='price'>$3</p></body></html>";
+
+        Parse parse = new Price();
+        assertEquals("$1", price(parse, one));
+        assertNull("same as page, .price is not unique", price(parse, two));
+
+        Parse learned = new Price().learnPaths();
+        assertEquals("$1", price(learned, one));
+        assertEquals("uniqueness is taken from the template", "$2", price(learned, two));
+    }
+
+    @Test
+    public void fits() {
+        Document document = Jsoup.parse(product(1, ""));
+        Page page = Page.of(document);
+        for (String key : KEYS) {
+            assertTrue(key, Template.fits(key, page.element(key)));
+        }
+        assertFalse(Template.fits(".list li[1]", page.element(".list li[0]")));
+        assertFalse(Template.fits(".other li[0]", page.element(".list li[0]")));
+        assertFalse(Template.fits("h2", page.element("h1")));
+    }
+
+    private Object price(Parse parse, String html) {
+        Context context = new Context("http://shop.com/p/1");
+        context.put(Document.class, Jsoup.parse(html));
+        parse.execute(context);
+        return context.get(Map.class).get("price");
+    }
+
+    private String product(int i, String banner) {
+        return "<html><body>" + banner + "<h1>name " + i + "</h1>"
+            + "<div id='guys'><ul class='list'><li>" + i + " a</li> <li class='x y'>b</li></ul></div>"
+            + "<div><span>c</span><span class='x'>" + i + "</span></div></body></html>";
+    }
+
+    private static class Price extends Parse {
+        @Override
+        protected Map<String, Object> parse(Context context) {
+            Map<String, Object> values = new HashMap<>();
+            values.put("price", page(context).text(".price"));
+            return values;
+        }
+    }
+}
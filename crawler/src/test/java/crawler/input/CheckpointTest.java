@@ -0,0 +1,53 @@
+package crawler.input;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class CheckpointTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void write() throws Exception {
+        File file = new File(folder.getRoot(), "bloom");
+        ConcurrentBloomFilter filter = ConcurrentBloomFilter.create(10000, Charsets.UTF_8);
+        Checkpoint checkpoint = new Checkpoint(filter, file);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("http://shop.com/p/" + i);
+            if (i % 10 == 0) {
+                checkpoint.request();
+            }
+        }
+        checkpoint.close();
+
+        ConcurrentBloomFilter read;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            read = ConcurrentBloomFilter.readFrom(in, Charsets.UTF_8);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(read.mightContain("http://shop.com/p/" + i));
+            if (read.mightContain("http://shop.com/other/" + i)) {
+                falsePositives++;
+            }
+            assertEquals(filter.mightContain("http://shop.com/other/" + i), read.mightContain("http://shop.com/other/" + i));
+        }
+        assertTrue("false positives " + falsePositives, falsePositives < 50);
+
+        assertArrayEquals("no temp file is left", new String[]{"bloom"}, folder.getRoot().list());
+    }
+}
@@ -0,0 +1,73 @@
+package crawler.input;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class ConcurrentBloomFilterTest {
+    @Test
+    public void readGuavaBloomFilter() throws Exception {
+        BloomFilter<CharSequence> guava = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), 10000);
+        for (int i = 0; i < 1000; i++) {
+            guava.put("http://a.com/" + i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        guava.writeTo(out);
+
+        ConcurrentBloomFilter filter = ConcurrentBloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()), Charsets.UTF_8);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("http://a.com/" + i));
+        }
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        filter.writeTo(copy);
+        assertEquals(out.size(), copy.size());
+        BloomFilter<CharSequence> read = BloomFilter.readFrom(new ByteArrayInputStream(copy.toByteArray()), Funnels.stringFunnel(Charsets.UTF_8));
+        assertTrue(read.mightContain("http://a.com/999"));
+    }
+
+    @Test
+    public void concurrentPutWinsOnce() throws Exception {
+        ConcurrentBloomFilter filter = ConcurrentBloomFilter.create(1000 * 1000, Charsets.UTF_8);
+        AtomicInteger added = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                for (int i = 0; i < 10000; i++) {
+                    if (filter.put("http://a.com/" + i)) {
+                        added.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(10000, added.get());
+    }
+}
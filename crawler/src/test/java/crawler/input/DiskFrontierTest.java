@@ -0,0 +1,56 @@
+package crawler.input;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author chi
+ */
+public class DiskFrontierTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resumeAfterClose() throws Exception {
+        File directory = folder.newFolder();
+        DiskFrontier frontier = new DiskFrontier(directory, 128);
+        for (int i = 0; i < 100; i++) {
+            frontier.add("http://a.com/" + i);
+        }
+        for (int i = 0; i < 40; i++) {
+            assertEquals("http://a.com/" + i, frontier.poll());
+        }
+        frontier.close();
+
+        DiskFrontier resumed = new DiskFrontier(directory, 128);
+        assertEquals(60, resumed.size());
+        resumed.add("http://a.com/100");
+        for (int i = 40; i <= 100; i++) {
+            assertEquals("http://a.com/" + i, resumed.poll());
+        }
+        assertNull(resumed.poll());
+        resumed.close();
+    }
+
+    @Test
+    public void deleteConsumedSegments() throws Exception {
+        File directory = folder.newFolder();
+        DiskFrontier frontier = new DiskFrontier(directory, 128);
+        for (int i = 0; i < 100; i++) {
+            frontier.add("http://a.com/" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            frontier.poll();
+        }
+        frontier.close();
+
+        assertEquals(0, new DiskFrontier(directory, 128).size());
+        assertEquals(2, directory.list().length);
+    }
+}
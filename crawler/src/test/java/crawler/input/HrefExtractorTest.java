@@ -0,0 +1,91 @@
+package crawler.input;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import crawler.Context;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class HrefExtractorTest {
+    private static final String URL = "http://shop.com/list/shirts?page=2";
+    private static final String HTML = "<!DOCTYPE html><html><head><title>a < b</title>"
+        + "<script>var s = '<a href=\"/script\">'; if (a<b) {}</script>"
+        + "<style>a > b { color: red }</style></head><body>"
+        + "<!-- <a href=\"/comment\"> -- still comment -->"
+        + "<a href=\"/p/1\">1</a> <A HREF='p/2' class=x>2</A>"
+        + "<a class=\"x > y\" href=/p/3>3</a>"
+        + "<a href=\"?page=3\">next</a><a href=\"#top\">top</a>"
+        + "<a href=\"/p?a=1&amp;b=2&#38;c=&#x33;\">q</a>"
+        + "<a href=\"  http://other.com/x  \">other</a>"
+        + "<a href=\"//cdn.shop.com/p\">cdn</a><a href=\"\">self</a>"
+        + "<a name=\"anchor\">none</a><a href=\"../up\">up</a>"
+        + "<abbr href=\"/abbr\">abbr</abbr><p>1 <2 and 3 < 4</p>"
+        + "<a\nhref\n=\n\"/p/4\"\n>4</a>"
+        + "</body></html>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameAsJsoup() {
+        List<String> expected = Lists.newArrayList();
+        for (Element a : Jsoup.parse(HTML, URL).select("a[href]")) {
+            expected.add(a.attr("abs:href"));
+        }
+        assertEquals(11, expected.size());
+        assertEquals(expected, extract(HTML, URL));
+    }
+
+    @Test
+    public void pieces() {
+        byte[] bytes = HTML.getBytes(Charsets.UTF_8);
+        List<String> links = Lists.newArrayList();
+        HrefExtractor extractor = new HrefExtractor(URL, Charsets.UTF_8, links::add);
+        for (int i = 0; i < bytes.length; i++) {
+            extractor.feed(bytes, i, 1);
+        }
+        assertEquals(extract(HTML, URL), links);
+    }
+
+    @Test
+    public void base() {
+        String html = "<head><base href=\"/static/\"><base href=\"http://other.com/\"></head>"
+            + "<a href=\"p/1\">1</a><a href=\"http://shop.com/p/2\">2</a>";
+        assertEquals(Lists.newArrayList("http://shop.com/static/p/1", "http://shop.com/p/2"), extract(html, URL));
+    }
+
+    @Test
+    public void charset() {
+        String html = "<a href=\"/p/衬衫\">衬衫</a>";
+        List<String> links = Lists.newArrayList();
+        HrefExtractor.extract(html.getBytes(Charsets.UTF_8), URL, Charsets.UTF_8, links::add);
+        assertEquals(Lists.newArrayList("http://shop.com/p/衬衫"), links);
+    }
+
+    @Test
+    public void input() throws Exception {
+        SeedInput input = new SeedInput(new File(folder.getRoot(), "bloom"), URL).includes("http://shop.com/p/.*");
+        Context context = new Context(URL);
+        context.put(byte[].class, HTML.getBytes(Charsets.UTF_8));
+        input.end(context);
+        assertEquals("the seed and 3 products", 4, input.pending());
+        input.close();
+    }
+
+    private List<String> extract(String html, String url) {
+        List<String> links = Lists.newArrayList();
+        HrefExtractor.extract(html.getBytes(Charsets.UTF_8), url, Charsets.UTF_8, links::add);
+        return links;
+    }
+}
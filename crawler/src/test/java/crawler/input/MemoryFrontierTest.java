@@ -0,0 +1,57 @@
+package crawler.input;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author chi
+ */
+public class MemoryFrontierTest {
+    @Test
+    public void frontCoded() {
+        MemoryFrontier frontier = new MemoryFrontier();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            urls.add("http://shop.com/category/" + (i / 100) + "/product/" + i + "?color=红");
+            urls.add("https://other.com/" + i);
+        }
+        int polled = 0;
+        for (int i = 0; i < urls.size(); i++) {
+            frontier.add(urls.get(i));
+            if (i % 3 == 0) {
+                assertEquals(urls.get(polled++), frontier.poll());
+            }
+        }
+        assertEquals(urls.size() - polled, frontier.size());
+        for (int i = polled; i < urls.size(); i++) {
+            assertEquals(urls.get(i), frontier.poll());
+        }
+        assertNull(frontier.poll());
+        assertEquals(0, frontier.size());
+
+        frontier.add("http://shop.com/");
+        assertEquals("http://shop.com/", frontier.poll());
+    }
+
+    @Test
+    public void longUrl() {
+        MemoryFrontier frontier = new MemoryFrontier();
+        StringBuilder query = new StringBuilder("http://shop.com/x?q=");
+        for (int i = 0; i < 70 * 1000; i++) {
+            query.append('a');
+        }
+        String url = query.toString();
+        frontier.add("http://shop.com/x");
+        frontier.add(url);
+        frontier.add(url + "b");
+        assertEquals("http://shop.com/x", frontier.poll());
+        assertEquals(url, frontier.poll());
+        assertEquals(url + "b", frontier.poll());
+        assertNull(frontier.poll());
+    }
+}
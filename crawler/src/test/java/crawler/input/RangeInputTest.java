@@ -0,0 +1,63 @@
+package crawler.input;
+
+import crawler.Context;
+import org.junit.Test;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author chi
+ */
+public class RangeInputTest {
+    @Test
+    public void template() {
+        String[] templates = {"http://shop.com/p/{}/", "http://shop.com/p/{}/{}", "http://shop.com/{}?id={}",
+            "http://shop.com/p", "http://shop.com/\\{}/{}", "http://shop.com/\\\\{}", "{}", ""};
+        for (String template : templates) {
+            for (int id : new int[]{0, 42, -7, Integer.MAX_VALUE}) {
+                assertEquals(template, MessageFormatter.arrayFormat(template, new Object[]{id}).getMessage(),
+                    UrlTemplate.compile(template).render(id));
+            }
+        }
+    }
+
+    @Test
+    public void split() throws Exception {
+        RangeInput input = new RangeInput("http://shop.com/p/{}", 10, 100010);
+        Spliterator<Context> first = input.spliterator();
+        List<Spliterator<Context>> parts = new CopyOnWriteArrayList<>();
+        parts.add(first);
+        for (int i = 0; i < 4; i++) {
+            for (Spliterator<Context> part : parts) {
+                parts.add(part.trySplit());
+            }
+        }
+        assertEquals(16, parts.size());
+
+        BitSet seen = new BitSet();
+        Thread[] threads = new Thread[parts.size()];
+        for (int i = 0; i < threads.length; i++) {
+            Spliterator<Context> part = parts.get(i);
+            assertEquals(6250, part.estimateSize());
+            BitSet own = new BitSet();
+            threads[i] = new Thread(() -> {
+                part.forEachRemaining(context -> own.set(Integer.parseInt(context.url().substring(18))));
+                synchronized (seen) {
+                    seen.or(own);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100000, seen.cardinality());
+        assertEquals(10, seen.nextSetBit(0));
+    }
+}
@@ -0,0 +1,70 @@
+package crawler.input;
+
+import crawler.Context;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class UrlNormalizerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final UrlNormalizer normalizer = new UrlNormalizer();
+
+    @Test
+    public void basic() {
+        assertEquals("http://shop.com/", normalizer.normalize("HTTP://Shop.COM"));
+        assertEquals("http://shop.com/p/1", normalizer.normalize("http://shop.com:80/p/1#reviews"));
+        assertEquals("https://shop.com/P/1", normalizer.normalize("https://shop.com:443/P/1"));
+        assertEquals("http://shop.com:8080/", normalizer.normalize("http://shop.com:8080"));
+        assertEquals("http://shop.com/p?a=1&b=2", normalizer.normalize("http://shop.com/p?&a=1&&b=2&"));
+        assertEquals("http://shop.com/p", normalizer.normalize("http://shop.com/p?"));
+        assertEquals("http://user@shop.com/", normalizer.normalize("http://user@Shop.com:"));
+        assertEquals("http://[::1]/", normalizer.normalize("http://[::1]"));
+        assertNull(normalizer.normalize("mailto:chi@shop.com"));
+        assertNull(normalizer.normalize("ftp://shop.com/"));
+        assertNull(normalizer.normalize(""));
+    }
+
+    @Test
+    public void unchanged() {
+        String url = "http://shop.com/p/1?b=2&a=1";
+        assertSame(url, normalizer.normalize(url));
+    }
+
+    @Test
+    public void rules() {
+        UrlNormalizer normalizer = new UrlNormalizer().stripTracking().stripParameters("sid").sortQuery();
+        assertEquals("http://shop.com/p?a=1&a=0&b=2",
+            normalizer.normalize("http://shop.com/p?utm_source=x&b=2&sid=9&a=1&gclid=y&a=0&utm_medium=z"));
+        assertEquals("http://shop.com/p?sidebar=1", normalizer.normalize("http://shop.com/p?sidebar=1&sid"));
+        assertEquals("http://shop.com/p", normalizer.normalize("http://shop.com/p?utm_campaign=a#top"));
+    }
+
+    @Test
+    public void seeds() throws Exception {
+        SeedInput input = new SeedInput(new File(folder.getRoot(), "bloom"), "HTTP://Shop.com:80/p/1?utm_source=x#top")
+            .normalizer(new UrlNormalizer().stripTracking());
+        Iterator<Context> iterator = input.iterator();
+        assertTrue(iterator.hasNext());
+        assertEquals("http://shop.com/p/1", iterator.next().url());
+
+        Context context = new Context("http://shop.com/");
+        context.put(Document.class, Jsoup.parse("<a href='/p/1'>1</a><a href='/p/2'>2</a>", "http://shop.com/"));
+        input.end(context);
+        assertEquals("only /p/2 is new", 1, input.pending());
+        input.close();
+    }
+}
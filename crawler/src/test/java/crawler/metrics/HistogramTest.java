@@ -0,0 +1,47 @@
+package crawler.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class HistogramTest {
+    @Test
+    public void buckets() {
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = Histogram.index(value);
+            assertTrue(Histogram.lowest(index) <= value && value <= Histogram.highest(index));
+        }
+        assertEquals(Histogram.highest(Histogram.index(Long.MAX_VALUE)), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void percentiles() {
+        Histogram histogram = new Histogram();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            histogram.record(1000000 + random.nextInt(1000000));
+        }
+        histogram.record(50000000);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100001, snapshot.count());
+        assertEquals(50000000, snapshot.max());
+        assertEquals(1500000, snapshot.percentile(50), 1500000 / 32);
+        assertEquals(1990000, snapshot.percentile(99), 1990000 / 32);
+        assertEquals(50000000, snapshot.percentile(100));
+    }
+
+    @Test
+    public void empty() {
+        Histogram.Snapshot snapshot = new Histogram().snapshot();
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.percentile(99));
+        assertEquals(0, snapshot.mean(), 0);
+    }
+}
@@ -0,0 +1,60 @@
+package crawler.metrics;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author chi
+ */
+public class MetricsTest {
+    @Test
+    public void jmx() throws Exception {
+        Metrics metrics = new Metrics();
+        metrics.counter("succeeded").add(3);
+        metrics.gauge("queued", () -> 7);
+        metrics.timer("Get").record(TimeUnit.MILLISECONDS.toNanos(20));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.register("test");
+        try {
+            assertEquals(3L, server.getAttribute(name, "succeeded"));
+            assertEquals(7L, server.getAttribute(name, "queued"));
+            assertEquals(1L, server.getAttribute(name, "Get.count"));
+            assertEquals(20, (Double) server.getAttribute(name, "Get.p99"), 1);
+            assertEquals(2 + 5, server.getMBeanInfo(name).getAttributes().length);
+            try {
+                server.invoke(name, "reset", new Object[0], new String[0]);
+                fail("metrics have no operations");
+            } catch (ReflectionException e) {
+                assertTrue(e.getTargetException() instanceof NoSuchMethodException);
+            }
+        } finally {
+            metrics.unregister(name);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void summary() {
+        Metrics metrics = new Metrics();
+        metrics.counter("succeeded").increment();
+        metrics.gauge("queued", () -> 2);
+        metrics.timer("Get").record(TimeUnit.MILLISECONDS.toNanos(5));
+
+        try (Reporter reporter = new Reporter(metrics, 1, TimeUnit.HOURS)) {
+            String summary = reporter.summary();
+            assertTrue(summary, summary.startsWith("succeeded 1 ("));
+            assertTrue(summary, summary.contains(" | queued 2 | Get n=1 p50=5.0ms"));
+        }
+    }
+}
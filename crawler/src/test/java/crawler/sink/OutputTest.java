@@ -0,0 +1,162 @@
+package crawler.sink;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import crawler.Context;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author chi
+ */
+public class OutputTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void jsonLines() throws Exception {
+        File directory = folder.newFolder();
+        Output output = new Output(new JsonLinesSink(directory, "products").rotate(200, TimeUnit.HOURS.toMillis(1)));
+        for (int i = 0; i < 20; i++) {
+            output.execute(context(ImmutableMap.of("id", i, "name", "tee \"" + i + "\"\n")));
+        }
+        output.close();
+
+        File[] files = directory.listFiles();
+        assertTrue(files.length > 1);
+        List<String> lines = Lists.newArrayList();
+        for (File file : files) {
+            lines.addAll(Files.readLines(file, Charsets.UTF_8));
+        }
+        assertEquals(20, lines.size());
+        assertTrue(lines.contains("{\"id\":7,\"name\":\"tee \\\"7\\\"\\n\"}"));
+    }
+
+    @Test
+    public void rotateByBytes() throws Exception {
+        File directory = folder.newFolder();
+        Output output = new Output(new JsonLinesSink(directory, "products").rotate(250, TimeUnit.HOURS.toMillis(1)));
+        String name = Strings.repeat("衬衫", 15);
+        for (int i = 0; i < 20; i++) {
+            output.execute(context(ImmutableMap.of("id", i, "name", name)));
+        }
+        output.close();
+
+        long line = ("{\"id\":10,\"name\":\"" + name + "\"}\n").getBytes(Charsets.UTF_8).length;
+        for (File file : directory.listFiles()) {
+            assertTrue(file.length() + " bytes", file.length() < 250 + line);
+        }
+    }
+
+    @Test
+    public void numbers() {
+        assertEquals("{\"nan\":null,\"infinite\":null,\"float\":null,\"price\":1.5,\"count\":2}",
+            Json.toJson(ImmutableMap.of("nan", Double.NaN, "infinite", Double.NEGATIVE_INFINITY,
+                "float", Float.POSITIVE_INFINITY, "price", 1.5, "count", 2)));
+    }
+
+    @Test
+    public void csv() throws Exception {
+        File file = folder.newFile();
+        Output output = new Output(new CsvSink(file, "id", "name"));
+        output.execute(context(ImmutableMap.of("id", 1, "name", "a, b")));
+        output.execute(context(ImmutableMap.of("id", 2)));
+        output.close();
+
+        assertEquals("id,name\r\n1,\"a, b\"\r\n2,\r\n", Files.toString(file, Charsets.UTF_8));
+    }
+
+    @Test
+    public void slowSinkGroupsFlushes() throws Exception {
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger flushes = new AtomicInteger();
+        Output output = new Output(new Sink() {
+            @Override
+            public void write(Map<String, Object> record) {
+                written.incrementAndGet();
+            }
+
+            @Override
+            public void flush() throws IOException {
+                flushes.incrementAndGet();
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 2000; i++) {
+            output.execute(context(ImmutableMap.of("id", i)));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        output.close();
+
+        assertEquals(2000, written.get());
+        assertTrue(flushes.get() < 100);
+    }
+
+    @Test
+    public void jdbcBatch() throws Exception {
+        List<String> calls = Lists.newArrayList();
+        PreparedStatement statement = proxy(PreparedStatement.class, calls, null);
+        Connection connection = proxy(Connection.class, calls, statement);
+        DataSource dataSource = proxy(DataSource.class, calls, connection);
+
+        JdbcSink sink = new JdbcSink(dataSource, "product", "id", "name");
+        assertEquals("insert into product (id, name) values (?, ?)", sink.sql());
+        Output output = new Output(sink, 100, 10);
+        for (int i = 0; i < 10; i++) {
+            output.execute(context(ImmutableMap.of("id", i, "name", "tee")));
+        }
+        output.close();
+
+        assertEquals(1, calls.stream().filter("getConnection"::equals).count());
+        assertEquals(10, calls.stream().filter("addBatch"::equals).count());
+        assertEquals(calls.stream().filter("executeBatch"::equals).count(), calls.stream().filter("commit"::equals).count());
+        assertTrue(calls.contains("close"));
+    }
+
+    private Context context(Map<String, Object> record) {
+        Context context = new Context("http://a.com/");
+        context.put(Map.class, record);
+        return context;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, List<String> calls, Object result) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            synchronized (calls) {
+                calls.add(method.getName());
+            }
+            if (method.getName().equals("executeBatch")) {
+                return new int[0];
+            }
+            return method.getReturnType().isInstance(result) ? result : null;
+        });
+    }
+}